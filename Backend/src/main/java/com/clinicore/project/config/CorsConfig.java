@@ -11,6 +11,9 @@ import java.util.List;
 @Configuration
 public class CorsConfig {
 
+    // also used by WebSocketConfig for the /ws handshake
+    static final List<String> ALLOWED_ORIGINS = List.of("http://localhost:5173", "http://localhost:5174", "http://localhost:5175", "http://clinicore.us-east-2.elasticbeanstalk.com", "http://clinicore-frontend-live.s3-website.us-east-2.amazonaws.com", "https://clinicore-alem.com");
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         // configuration object for CORS
@@ -22,7 +25,7 @@ public class CorsConfig {
 
         // which port origins are allowed to make requests to the API
         // we'll add our deployed frontend port here later...
-        config.setAllowedOrigins(List.of("http://localhost:5173", "http://localhost:5174", "http://localhost:5175", "http://clinicore.us-east-2.elasticbeanstalk.com", "http://clinicore-frontend-live.s3-website.us-east-2.amazonaws.com", "https://clinicore-alem.com"));
+        config.setAllowedOrigins(ALLOWED_ORIGINS);
 
 
         // OPTIONS for preflight means "can this request be made?"
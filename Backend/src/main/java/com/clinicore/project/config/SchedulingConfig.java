@@ -0,0 +1,10 @@
+package com.clinicore.project.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// turns on @Scheduled background jobs (attachment migration, etc.)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
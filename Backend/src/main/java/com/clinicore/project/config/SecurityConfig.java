@@ -1,5 +1,6 @@
 package com.clinicore.project.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -31,6 +32,9 @@ public class SecurityConfig {
                     // CORS pre-flight
                     .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
 
+                    // async re-dispatch of a streaming response (SSE) — the request was authorized on the way in
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                     // public endpoints — no login required
                     .requestMatchers(HttpMethod.POST, "/api/accountCredential/login").permitAll()
                     .requestMatchers(HttpMethod.POST, "/api/accountCredential/request-access").permitAll()
@@ -40,6 +44,9 @@ public class SecurityConfig {
                     .requestMatchers(HttpMethod.POST, "/api/accountCredential/forgot-password").permitAll()
                     .requestMatchers(HttpMethod.POST, "/api/accountCredential/reset-password").permitAll()
 
+                    // STOMP handshake — the JWT is checked on the CONNECT frame (StompAuthChannelInterceptor)
+                    .requestMatchers("/ws/**").permitAll()
+
                     // admin only
                     .requestMatchers("/api/accountCredential/account-requests/**").hasRole("ADMIN")
                     .requestMatchers("/api/inventory/**").hasAnyRole("ADMIN", "CAREGIVER")
@@ -0,0 +1,77 @@
+package com.clinicore.project.config;
+
+import com.clinicore.project.service.JwtService;
+import io.jsonwebtoken.Claims;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Authenticates STOMP sessions with the same JWT the REST API uses.
+ * Browsers can't set headers on the WebSocket handshake, so the token
+ * comes in the CONNECT frame's Authorization header instead.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    // application destination prefix from WebSocketConfig, with the slash so "/application" doesn't match
+    private static final String APP_PREFIX = "/app/";
+
+    private final JwtService jwtService;
+
+    public StompAuthChannelInterceptor(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String authHeader = accessor.getFirstNativeHeader("Authorization");
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                throw new MessageDeliveryException("Missing bearer token");
+            }
+            try {
+                Claims claims = jwtService.validateToken(authHeader.substring(7));
+                String role = claims.get("role", String.class);
+
+                // principal name is the userId, same as JwtAuthenticationFilter
+                accessor.setUser(new UsernamePasswordAuthenticationToken(
+                        claims.getSubject(),
+                        null,
+                        List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                ));
+            } catch (Exception e) {
+                throw new MessageDeliveryException("Invalid or expired token");
+            }
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            // only per-user destinations — subscribing to /queue/... directly could read someone else's events
+            String destination = accessor.getDestination();
+            if (accessor.getUser() == null || destination == null || !destination.startsWith("/user/")) {
+                throw new MessageDeliveryException("Subscription not allowed: " + destination);
+            }
+        } else if (StompCommand.SEND.equals(accessor.getCommand())) {
+            // clients only talk to @MessageMapping handlers — a SEND to /user/... or /queue/... would go
+            // straight to the broker and let anyone fake NEW_MESSAGE/READ_RECEIPT events for another user
+            String destination = accessor.getDestination();
+            if (accessor.getUser() == null || destination == null || !destination.startsWith(APP_PREFIX)) {
+                throw new MessageDeliveryException("Send not allowed: " + destination);
+            }
+        }
+
+        return message;
+    }
+}
@@ -1,12 +1,16 @@
 package com.clinicore.project.controller;
 
+import com.clinicore.project.repository.DocumentsRepository;
 import com.clinicore.project.service.DocumentService;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.clinicore.project.entity.Document;
 import java.util.*;
 import java.util.Set;
 
@@ -21,6 +25,9 @@ public class DocumentsController {
         this.documentService = documentService;
     }
 
+    // browsers may keep a copy but must revalidate (cheap 304) — access can be revoked
+    private static final CacheControl FILE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private static final Set<String> ALLOWED_EXTENSIONS = Set.of("pdf", "png", "jpg", "jpeg", "docx", "xlsx");
 
     @PostMapping("/upload")
@@ -106,14 +113,24 @@ public class DocumentsController {
                     .body(Map.of("message", "Unexpected server error"));
         }
     }
+    // Range requests (206) come from returning a Resource; If-None-Match is answered before the blob is read
     @GetMapping("/file/{documentId}")
-    public ResponseEntity<byte[]> viewDocument(
+    public ResponseEntity<Resource> viewDocument(
             @PathVariable Long documentId,
-            @RequestParam Long userId) {
+            @RequestParam Long userId,
+            WebRequest request) {
 
         try {
-            Document doc = documentService.getDocumentWithFile(documentId, userId);
-            byte[] data = doc.getDocument();
+            DocumentsRepository.DocumentFileInfo doc = documentService.getDocumentFileInfo(documentId, userId);
+            String etag = doc.getContentHash();
+            if (etag != null && request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(FILE_CACHE_CONTROL)
+                        .build();
+            }
+
+            byte[] data = documentService.getDocumentContent(doc);
             String title = doc.getTitle();
 
             // detect content type from file magic bytes
@@ -136,10 +153,14 @@ public class DocumentsController {
                 }
             }
 
-            return ResponseEntity.ok()
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header("Content-Disposition", "inline; filename=\"" + title + "\"")
                     .header("Content-Type", contentType)
-                    .body(data);
+                    .cacheControl(FILE_CACHE_CONTROL);
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(new ByteArrayResource(data != null ? data : new byte[0]));
 
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
@@ -2,18 +2,37 @@ package com.clinicore.project.controller;
 
 import com.clinicore.project.dto.ConversationDTO;
 import com.clinicore.project.dto.MessageDTO;
+import com.clinicore.project.dto.MessageEventDTO;
+import com.clinicore.project.dto.MessagePageDTO;
+import com.clinicore.project.dto.MessageSyncDTO;
 import com.clinicore.project.entity.UserProfile;
 import com.clinicore.project.repository.MessagesRepository;
+import com.clinicore.project.service.MessageEventStream;
+import com.clinicore.project.service.MessageSearchService;
 import com.clinicore.project.service.MessageService;
+import com.clinicore.project.service.PresenceService;
+import com.clinicore.project.util.ConversationKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -25,6 +44,21 @@ public class MessagesController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private MessageEventStream messageEventStream;
+
+    @Value("${messages.events.heartbeat-seconds:25}")
+    private long eventsHeartbeatSeconds;
+
+    // private + revalidate every time: repeat views become a 304 with no content read, revoked access still applies
+    private static final CacheControl ATTACHMENT_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     // all conversations for a user, latest on top
     @GetMapping("/chat/conversations")
     public ResponseEntity<?> getUserConversations(@RequestParam Long userId) {
@@ -37,11 +71,23 @@ public class MessagesController {
         }
     }
 
+    // without paging params this returns the whole thread (old clients);
+    // with before/after/limit it returns one keyset page plus nextCursor
     @GetMapping("/chat/conversation/{conversationId}")
-    public ResponseEntity<?> getConversationMessages(@PathVariable String conversationId) {
+    public ResponseEntity<?> getConversationMessages(@PathVariable String conversationId,
+                                                     @RequestParam(required = false) Long before,
+                                                     @RequestParam(required = false) Long after,
+                                                     @RequestParam(required = false) Integer limit) {
         try {
-            List<MessageDTO> messages = messageService.getConversationMessages(conversationId);
-            return ResponseEntity.ok(messages);
+            if (before == null && after == null && limit == null) {
+                List<MessageDTO> messages = messageService.getConversationMessages(ConversationKey.parse(conversationId));
+                return ResponseEntity.ok(messages);
+            }
+            MessagePageDTO page = messageService.getConversationMessagesPage(
+                    ConversationKey.parse(conversationId), before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "Failed to load messages: " + e.getMessage()));
@@ -72,6 +118,47 @@ public class MessagesController {
         }
     }
 
+    // admin announcement to a role ("role": "CAREGIVER") or explicit users ("recipientIds": [..]).
+    // the sender is the logged-in user, not a request field — only admins may broadcast
+    @PostMapping("/chat/broadcast")
+    public ResponseEntity<?> broadcastMessage(@RequestBody Map<String, Object> request) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getName() == null) {
+                return ResponseEntity.status(401).build();
+            }
+            Long senderId = Long.parseLong(auth.getName());
+            String messageText = (String) request.get("message");
+
+            if (messageText == null || messageText.trim().isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Message cannot be empty"));
+            }
+            if (messageText.length() > 5000) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Message must be under 5000 characters"));
+            }
+
+            UserProfile.Role role = request.get("role") != null
+                    ? UserProfile.Role.valueOf(request.get("role").toString().toUpperCase())
+                    : null;
+            List<Long> recipientIds = null;
+            if (request.get("recipientIds") instanceof List<?> ids) {
+                recipientIds = ids.stream().map(id -> Long.valueOf(id.toString())).toList();
+            }
+
+            int sent = messageService.broadcastMessage(senderId, messageText, role, recipientIds);
+            return ResponseEntity.ok(Map.of("message", "Broadcast sent", "recipientCount", sent));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to send broadcast: " + e.getMessage()));
+        }
+    }
+
     @PostMapping(value = "/chat/send-with-attachment", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> sendMessageWithAttachment(
             @RequestParam Long senderId,
@@ -83,14 +170,20 @@ public class MessagesController {
                 return ResponseEntity.badRequest().body(Map.of("error", "File is required"));
             }
 
-            MessageDTO sent = messageService.sendMessageWithAttachment(
-                    senderId,
-                    recipientId,
-                    message,
-                    file.getBytes(),
-                    file.getOriginalFilename(),
-                    file.getContentType()
-            );
+            // multipart parts are spooled to disk by the servlet container, so this streams rather than
+            // pulling the whole upload into a byte[]
+            MessageDTO sent;
+            try (InputStream in = file.getInputStream()) {
+                sent = messageService.sendMessageWithAttachment(
+                        senderId,
+                        recipientId,
+                        message,
+                        in,
+                        file.getSize(),
+                        file.getOriginalFilename(),
+                        file.getContentType()
+                );
+            }
             return ResponseEntity.ok(sent);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -101,7 +194,7 @@ public class MessagesController {
     }
 
     @GetMapping("/chat/attachment/{messageId}")
-    public ResponseEntity<byte[]> getAttachment(@PathVariable Long messageId) {
+    public ResponseEntity<Resource> getAttachment(@PathVariable Long messageId, WebRequest request) {
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             if (auth == null || auth.getName() == null) {
@@ -113,6 +206,18 @@ public class MessagesController {
             if (view == null) {
                 return ResponseEntity.notFound().build();
             }
+            // store key is the content's SHA-256 — a strong validator; legacy inline blobs have none
+            String etag = view.getAttachmentKey();
+            if (etag != null && request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(ATTACHMENT_CACHE_CONTROL)
+                        .build();
+            }
+            Resource content = messageService.openAttachment(view);
+            if (content == null) {
+                return ResponseEntity.notFound().build();
+            }
 
             String contentType = view.getAttachmentType() != null
                     ? view.getAttachmentType()
@@ -120,10 +225,15 @@ public class MessagesController {
 
             String filename = view.getAttachmentName() != null ? view.getAttachmentName() : "attachment";
 
-            return ResponseEntity.ok()
+            // Resource body: Spring answers Range requests with 206 from it
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_TYPE, contentType)
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(view.getAttachmentData());
+                    .cacheControl(ATTACHMENT_CACHE_CONTROL);
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(content);
         } catch (SecurityException e) {
             return ResponseEntity.status(403).build();
         } catch (Exception e) {
@@ -131,18 +241,154 @@ public class MessagesController {
         }
     }
 
+    // small JPEG preview of an image attachment; 404 until it has been generated
+    @GetMapping("/chat/attachment/{messageId}/thumbnail")
+    public ResponseEntity<Resource> getAttachmentThumbnail(@PathVariable Long messageId, WebRequest request) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getName() == null) {
+                return ResponseEntity.status(401).build();
+            }
+            Long userId = Long.parseLong(auth.getName());
+
+            MessagesRepository.AttachmentView view = messageService.getAttachment(messageId, userId);
+            if (view == null || view.getThumbnailKey() == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = view.getThumbnailKey();
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(ATTACHMENT_CACHE_CONTROL)
+                        .build();
+            }
+            Resource content = messageService.openThumbnail(view);
+            if (content == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .eTag(etag)
+                    .cacheControl(ATTACHMENT_CACHE_CONTROL)
+                    .body(content);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(403).build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // delta sync for reconnecting clients: pass back the cursor from the previous response as ?since=
+    @GetMapping("/chat/sync")
+    public ResponseEntity<?> syncMessages(@RequestParam(required = false) String since,
+                                          @RequestParam(required = false) Integer limit) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getName() == null) {
+                return ResponseEntity.status(401).build();
+            }
+            Long userId = Long.parseLong(auth.getName());
+            MessageSyncDTO sync = messageService.syncSince(userId, since, limit);
+            return ResponseEntity.ok(sync);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to sync messages: " + e.getMessage()));
+        }
+    }
+
+    // word search over the caller's own messages; returns where the hits are, newest first
+    @GetMapping("/chat/search")
+    public ResponseEntity<?> searchMessages(@RequestParam String q,
+                                            @RequestParam(required = false) Integer limit) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getName() == null) {
+                return ResponseEntity.status(401).build();
+            }
+            Long userId = Long.parseLong(auth.getName());
+            List<MessagesRepository.MessageLocation> hits = messageSearchService.search(userId, q, limit);
+            List<Map<String, Object>> result = hits.stream()
+                    .map(hit -> Map.<String, Object>of(
+                            "messageId", hit.getId(),
+                            "conversationId", hit.getConversationId(),
+                            "sentAt", hit.getSentAt()))
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to search messages: " + e.getMessage()));
+        }
+    }
+
+    // buffered and written in batches by ReadReceiptCoalescer; upTo defaults to the latest message
     @PatchMapping("/chat/conversation/{conversationId}/read")
     public ResponseEntity<?> markConversationAsRead(@PathVariable String conversationId,
-                                                     @RequestParam Long userId) {
+                                                     @RequestParam Long userId,
+                                                     @RequestParam(required = false) Long upTo) {
         try {
-            messageService.markConversationAsRead(conversationId, userId);
+            messageService.markConversationAsRead(ConversationKey.parse(conversationId), userId, upTo);
             return ResponseEntity.ok(Map.of("success", true));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "Failed to mark as read: " + e.getMessage()));
         }
     }
 
+    // keeps the caller "online" without a websocket; clients call it every ~30s while the app is open
+    @PostMapping("/chat/presence/ping")
+    public ResponseEntity<?> pingPresence() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            return ResponseEntity.status(401).build();
+        }
+        presenceService.ping(Long.parseLong(auth.getName()));
+        return ResponseEntity.noContent().build();
+    }
+
+    // body: {"conversationId": "1_2", "typing": true} — repeat while typing, it expires after a few seconds
+    @PostMapping("/chat/typing")
+    public ResponseEntity<?> setTyping(@RequestBody Map<String, Object> request) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getName() == null) {
+                return ResponseEntity.status(401).build();
+            }
+            Long userId = Long.parseLong(auth.getName());
+            long conversationKey = ConversationKey.parse((String) request.get("conversationId"));
+            presenceService.setTyping(userId, conversationKey, Boolean.TRUE.equals(request.get("typing")));
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid typing request: " + e.getMessage()));
+        }
+    }
+
+    // same two over STOMP (/app/presence.ping, /app/typing) for clients that already hold a socket
+    @MessageMapping("/presence.ping")
+    public void pingPresence(Principal principal) {
+        if (principal != null) {
+            presenceService.ping(Long.parseLong(principal.getName()));
+        }
+    }
+
+    @MessageMapping("/typing")
+    public void setTyping(@Payload Map<String, Object> request, Principal principal) {
+        if (principal == null) return;
+        try {
+            long conversationKey = ConversationKey.parse((String) request.get("conversationId"));
+            presenceService.setTyping(Long.parseLong(principal.getName()), conversationKey,
+                    Boolean.TRUE.equals(request.get("typing")));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            // nothing to answer on a fire-and-forget frame; just drop it
+        }
+    }
+
     @GetMapping("/chat/unread-count")
     public ResponseEntity<?> getUnreadCount(@RequestParam Long userId) {
         try {
@@ -154,6 +400,42 @@ public class MessagesController {
         }
     }
 
+    /**
+     * SSE fallback for the STOMP push, for networks that break WebSocket upgrades: the same events,
+     * named by type, starting with UNREAD_TOTAL so clients can keep the badge without polling
+     * /chat/unread-count. A comment line every heartbeat keeps idle proxies from closing it.
+     * Uses the normal Authorization header (fetch-based EventSource clients).
+     */
+    @GetMapping(value = "/chat/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<MessageEventDTO>>> streamEvents() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            return ResponseEntity.status(401).build();
+        }
+        Long userId = Long.parseLong(auth.getName());
+
+        // register before reading the total: an event racing the read may be counted twice until the next
+        // total, but none is lost
+        Flux<MessageEventDTO> live = messageEventStream.subscribe(userId);
+        MessageEventDTO total = MessageEventDTO.unreadTotal(messageService.getTotalUnreadCount(userId));
+
+        Flux<ServerSentEvent<MessageEventDTO>> events = Flux.concat(Flux.just(total), live)
+                .map(event -> ServerSentEvent.builder(event).event(event.getType().name()).build());
+        // heartbeats are dropped, not queued, while the client is behind
+        Flux<ServerSentEvent<MessageEventDTO>> heartbeats = Flux.interval(Duration.ofSeconds(eventsHeartbeatSeconds))
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<MessageEventDTO>builder().comment("keepalive").build());
+
+        // the stream ends when the client disconnects or falls too far behind; the heartbeat ends with it.
+        // prefetch 1 so events wait in MessageEventStream's bounded buffer, not in operator queues
+        Flux<ServerSentEvent<MessageEventDTO>> body = events.publish(shared ->
+                Flux.merge(1, shared, heartbeats.takeUntilOther(shared.ignoreElements())), 1);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+    }
+
     @GetMapping("/chat/available-users")
     public ResponseEntity<?> getAvailableUsers(@RequestParam Long currentUserId) {
         try {
@@ -178,12 +460,14 @@ public class MessagesController {
     public ResponseEntity<?> startConversation(@PathVariable Long otherUserId,
                                                 @RequestParam Long currentUserId) {
         try {
-            String conversationId = messageService.generateConversationId(currentUserId, otherUserId);
+            String conversationId = ConversationKey.format(ConversationKey.of(currentUserId, otherUserId));
             return ResponseEntity.ok(Map.of(
                     "conversationId", conversationId,
                     "currentUserId", currentUserId,
                     "otherUserId", otherUserId
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "Failed to start conversation: " + e.getMessage()));
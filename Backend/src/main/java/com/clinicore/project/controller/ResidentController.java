@@ -2,14 +2,23 @@ package com.clinicore.project.controller;
 
 import com.clinicore.project.dto.MedicationInventoryDTO;
 import com.clinicore.project.dto.ResidentFullDTO;
+import com.clinicore.project.dto.ResidentPageDTO;
 import com.clinicore.project.service.ResidentService;
+import com.clinicore.project.util.ResidentETag;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -25,6 +34,11 @@ public class ResidentController {
     @Autowired
     private ResidentService residentService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${residents.stream.page-size:200}")
+    private int streamPageSize;
 
     // error logging for this controller
     private ResponseEntity<?> createErrorResponse(HttpStatus status, String message, Long userId) {
@@ -32,6 +46,42 @@ public class ResidentController {
                 .body(Map.of("message", message, "userId", userId != null ? userId : 0));
     }
 
+    /**
+     * GET /api/residents?after=&limit=&caregiverId=&mobilityStatus=&dnrPolst=&overdue=&fields=
+     * resident query API — one keyset page of residents in id order, returns { residents, nextCursor, hasMore }
+     * filters (all optional, combined with AND):
+     *   caregiverId     residents assigned to this caregiver
+     *   mobilityStatus  WALKS_WITHOUT_ASSISTANCE, WALKS_WITH_ASSISTANCE, WHEELCHAIR, BEDRIDDEN
+     *   dnrPolst        true/false
+     *   overdue         true = at least one overdue medication, false = none
+     * fields=firstName,lastName,capability returns only those (plus id); medications, allergies/diagnoses
+     * (medicalRecord) and caregivers are only queried when asked for. no fields = everything, like /full
+     */
+    @GetMapping
+    public ResponseEntity<?> queryResidents(
+            @RequestParam Long currentUserId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long caregiverId,
+            @RequestParam(required = false) String mobilityStatus,
+            @RequestParam(required = false) Boolean dnrPolst,
+            @RequestParam(required = false) Boolean overdue,
+            @RequestParam(required = false) List<String> fields) {
+        try {
+            ResidentPageDTO page = residentService.queryResidents(
+                    after, limit, caregiverId, mobilityStatus, dnrPolst, overdue, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage(), currentUserId);
+        } catch (Exception e) {
+            return createErrorResponse(
+                HttpStatus.INTERNAL_SERVER_ERROR,
+                "Error retrieving residents: " + e.getMessage(),
+                currentUserId
+            );
+        }
+    }
+
     /**
      * GET /api/residents/list
      * lightweight endpoint — returns only id, firstName, lastName for each resident
@@ -95,16 +145,47 @@ public class ResidentController {
         }
     }
 
+    /**
+     * GET /api/residents/full?stream=true
+     * same JSON array as /full, written one keyset page of residents at a time instead of building
+     * the whole list first, so memory stays flat no matter how many residents there are.
+     * errors after the first page can't change the status anymore — the response is cut off instead
+     */
+    @GetMapping(value = "/full", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllResidentsWithFullDetails(@RequestParam Long currentUserId) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                Long afterId = 0L;
+                List<ResidentFullDTO> page;
+                do {
+                    page = residentService.getResidentsWithFullDetailsPage(afterId, streamPageSize);
+                    for (ResidentFullDTO resident : page) {
+                        generator.writeObject(resident);
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) {
+                        afterId = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == streamPageSize);
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     /**
      * GET /api/residents/full/{residentId}
      * returns info on one resident from their ID.
      * admins and caregivers can read anyone, residents can only read themselves
      * (we check against the JWT, not the currentUserId query param since that's client-controlled)
+     * sends an ETag; a request with a still-current If-None-Match gets 304 after one primary key lookup
      */
     @GetMapping("/full/{residentId}")
     public ResponseEntity<?> getResidentFullDetails(
             @PathVariable Long residentId,
-            @RequestParam Long currentUserId) {
+            @RequestParam Long currentUserId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             // if caller is a resident, make sure they're fetching their own record
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -120,8 +201,24 @@ public class ResidentController {
                 }
             }
 
+            // version first: if a write lands during the load, the tag is older than the body, never newer
+            Long version = residentService.getResidentDetailsVersion(residentId);
+            CacheControl revalidate = CacheControl.noCache().cachePrivate();
+            if (version != null) {
+                String current = ResidentETag.matching(ifNoneMatch, version);
+                if (current != null) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).cacheControl(revalidate).build();
+                }
+            }
+
             ResidentFullDTO resident = residentService.getResidentFullDetailsById(residentId);
-            return ResponseEntity.ok(resident);
+            if (version == null) {
+                return ResponseEntity.ok(resident);
+            }
+            return ResponseEntity.ok()
+                    .eTag(ResidentETag.of(version, resident))
+                    .cacheControl(revalidate)
+                    .body(resident);
         } catch (RuntimeException e) {
             return createErrorResponse(
                 HttpStatus.NOT_FOUND,
@@ -19,6 +19,11 @@ public class ConversationDTO {
     private String otherUserName;
     private String otherUserRole;
 
+    // presence of the other user, from memory (PresenceService)
+    private Boolean otherUserOnline;
+    private LocalDateTime otherUserLastSeen;
+    private Boolean otherUserTyping;
+
     // last message preview
     private String lastMessage;
     private String lastMessageType;
@@ -1,6 +1,7 @@
 package com.clinicore.project.dto;
 
 import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.util.ConversationKey;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,6 +26,7 @@ public class MessageDTO {
     private String conversationId;
     private String attachmentUrl;
     private String attachmentName;
+    private String thumbnailUrl;
     private LocalDateTime sentAt;
     private LocalDateTime readAt;
     private Boolean isRead;
@@ -43,12 +45,16 @@ public class MessageDTO {
         dto.setRecipientRole(msg.getRecipientRole() != null ? msg.getRecipientRole().name() : null);
         dto.setMessage(msg.getMessage());
         dto.setMessageType(msg.getMessageType() != null ? msg.getMessageType().name() : "TEXT");
-        dto.setConversationId(msg.getConversationId());
+        dto.setConversationId(ConversationKey.format(msg.getConversationKey()));
         // attachments are streamed from /api/messages/chat/attachment/{id}
         if (msg.getAttachmentName() != null && msg.getId() != null) {
             dto.setAttachmentUrl("/api/messages/chat/attachment/" + msg.getId());
         }
         dto.setAttachmentName(msg.getAttachmentName());
+        // only once the preview exists — until then clients fall back to attachmentUrl
+        if (msg.getThumbnailKey() != null && msg.getId() != null) {
+            dto.setThumbnailUrl("/api/messages/chat/attachment/" + msg.getId() + "/thumbnail");
+        }
         dto.setSentAt(msg.getSentAt());
         dto.setReadAt(msg.getReadAt());
         dto.setIsRead(msg.getIsRead());
@@ -0,0 +1,83 @@
+package com.clinicore.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// DTO for chat events pushed to a user (new message, unread change, read receipt, typing)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageEventDTO {
+
+    public enum EventType {
+        NEW_MESSAGE,
+        UNREAD_COUNT,
+        READ_RECEIPT,
+        TYPING,
+        UNREAD_TOTAL
+    }
+
+    private EventType type;
+    private String conversationId;
+
+    // only set for NEW_MESSAGE
+    private MessageDTO message;
+
+    // only set for UNREAD_COUNT — how much the receiving user's unread total changed (+1 on send, -n on read)
+    private Integer unreadDelta;
+
+    // only set for READ_RECEIPT — who read the conversation and when
+    private Long readerId;
+    private LocalDateTime readAt;
+
+    // only set for TYPING — who started or stopped typing
+    private Long userId;
+    private Boolean typing;
+
+    // only set for UNREAD_TOTAL — the user's whole unread count, sent first on an SSE stream so deltas have a base
+    private Integer unreadTotal;
+
+    public static MessageEventDTO newMessage(MessageDTO message) {
+        MessageEventDTO event = new MessageEventDTO();
+        event.setType(EventType.NEW_MESSAGE);
+        event.setConversationId(message.getConversationId());
+        event.setMessage(message);
+        return event;
+    }
+
+    public static MessageEventDTO unreadCount(String conversationId, int unreadDelta) {
+        MessageEventDTO event = new MessageEventDTO();
+        event.setType(EventType.UNREAD_COUNT);
+        event.setConversationId(conversationId);
+        event.setUnreadDelta(unreadDelta);
+        return event;
+    }
+
+    public static MessageEventDTO readReceipt(String conversationId, Long readerId, LocalDateTime readAt) {
+        MessageEventDTO event = new MessageEventDTO();
+        event.setType(EventType.READ_RECEIPT);
+        event.setConversationId(conversationId);
+        event.setReaderId(readerId);
+        event.setReadAt(readAt);
+        return event;
+    }
+
+    public static MessageEventDTO typing(String conversationId, Long userId, boolean typing) {
+        MessageEventDTO event = new MessageEventDTO();
+        event.setType(EventType.TYPING);
+        event.setConversationId(conversationId);
+        event.setUserId(userId);
+        event.setTyping(typing);
+        return event;
+    }
+
+    public static MessageEventDTO unreadTotal(int unreadTotal) {
+        MessageEventDTO event = new MessageEventDTO();
+        event.setType(EventType.UNREAD_TOTAL);
+        event.setUnreadTotal(unreadTotal);
+        return event;
+    }
+}
@@ -0,0 +1,23 @@
+package com.clinicore.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// one page of a conversation, oldest → newest, plus the cursor for the next request
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDTO {
+
+    private List<MessageDTO> messages;
+
+    // paging back (before): id of the oldest message, pass as ?before= to load older ones
+    // paging forward (after): id of the newest message, pass as ?after= to load newer ones
+    // null when paging back and there is nothing older
+    private Long nextCursor;
+
+    private Boolean hasMore;
+}
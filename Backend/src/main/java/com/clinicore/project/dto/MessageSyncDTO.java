@@ -0,0 +1,29 @@
+package com.clinicore.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// everything that changed for a user since their last sync cursor
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSyncDTO {
+
+    // new messages sent or received, oldest → newest
+    private List<MessageDTO> messages;
+
+    // changes to existing messages, oldest → newest (READ_RECEIPT events)
+    private List<MessageEventDTO> changes;
+
+    // pass back as ?since= next time
+    private String cursor;
+
+    // more is waiting — call again right away with the new cursor
+    private Boolean hasMore;
+
+    // cursor is too old (changes were pruned) — drop local state and reload conversations
+    private Boolean resetRequired;
+}
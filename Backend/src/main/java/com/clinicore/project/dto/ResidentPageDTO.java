@@ -0,0 +1,24 @@
+package com.clinicore.project.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// one page of the resident query API, in id order, plus the cursor for the next request
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResidentPageDTO {
+
+    // ResidentFullDTO fields, only the ones asked for with ?fields= (id is always there)
+    private List<Map<String, Object>> residents;
+
+    // id of the last resident on this page, pass as ?after= for the next one; null on the last page.
+    // with ?overdue= it can be a resident past the last one returned, when the scan stopped early
+    private Long nextCursor;
+
+    private Boolean hasMore;
+}
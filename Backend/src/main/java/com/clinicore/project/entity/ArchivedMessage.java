@@ -0,0 +1,101 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// cold tier of communication_portal: old, read messages moved here by MessageArchiveService.
+// same columns and ids as the live row (minus the legacy inline blob), so reads can merge both tables by id.
+// indexed for the two ways history is read: per conversation (paging) and per user (delta sync from an old cursor).
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "communication_portal_archive", indexes = {
+        @Index(name = "idx_archive_conversation_key_id", columnList = "conversation_key, id"),
+        @Index(name = "idx_archive_sender_id", columnList = "sender_id"),
+        @Index(name = "idx_archive_recipient_id", columnList = "recipient_id")
+})
+public class ArchivedMessage {
+
+    // copied from communication_portal, not generated
+    @Id
+    private Long id;
+
+    @Column(name = "sender_id")
+    private Long senderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sender_role")
+    private CommunicationPortal.UserRole senderRole;
+
+    @Column(name = "recipient_id")
+    private Long recipientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "recipient_role")
+    private CommunicationPortal.UserRole recipientRole;
+
+    private String subject;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+
+    @Column(name = "is_read")
+    private Boolean isRead;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "message_type")
+    private CommunicationPortal.MessageType messageType;
+
+    @Column(name = "conversation_key")
+    private Long conversationKey;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Column(name = "attachment_type")
+    private String attachmentType;
+
+    @Column(name = "attachment_key", length = 64)
+    private String attachmentKey;
+
+    @Column(name = "attachment_size")
+    private Long attachmentSize;
+
+    @Column(name = "thumbnail_key", length = 64)
+    private String thumbnailKey;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+
+    // detached live-shaped copy, so the DTO mapping doesn't need to know which tier a message came from
+    public CommunicationPortal toMessage() {
+        CommunicationPortal message = new CommunicationPortal();
+        message.setId(id);
+        message.setSenderId(senderId);
+        message.setSenderRole(senderRole);
+        message.setRecipientId(recipientId);
+        message.setRecipientRole(recipientRole);
+        message.setSubject(subject);
+        message.setMessage(this.message);
+        message.setSentAt(sentAt);
+        message.setReadAt(readAt);
+        message.setIsRead(isRead);
+        message.setMessageType(messageType);
+        message.setConversationKey(conversationKey);
+        message.setAttachmentName(attachmentName);
+        message.setAttachmentType(attachmentType);
+        message.setAttachmentKey(attachmentKey);
+        message.setAttachmentSize(attachmentSize);
+        message.setThumbnailKey(thumbnailKey);
+        return message;
+    }
+}
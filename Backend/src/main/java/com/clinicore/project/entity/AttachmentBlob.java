@@ -0,0 +1,36 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// one row per file in the AttachmentStore, counting the rows that point at it
+// (message attachments, thumbnails, documents). a file is only deleted once nothing does.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "attachment_blob", indexes = {
+        @Index(name = "idx_attachment_blob_refs_updated", columnList = "ref_count, updated_at")
+})
+public class AttachmentBlob {
+
+    // SHA-256 of the plaintext — the AttachmentStore key
+    @Id
+    @Column(name = "content_key", length = 64)
+    private String contentKey;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // last acquire/release — zero-ref rows are only swept after a grace period
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
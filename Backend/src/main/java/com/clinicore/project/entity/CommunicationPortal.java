@@ -1,5 +1,6 @@
 package com.clinicore.project.entity;
 
+import com.clinicore.project.util.ConversationKey;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -11,8 +12,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @SuppressWarnings("JpaDataSourceORMInspection")
 @Table(name = "communication_portal", indexes = {
-        @Index(name = "idx_conversation_id", columnList = "conversation_id"),
-        @Index(name = "idx_conv_recipient_read", columnList = "conversation_id, recipient_id, is_read"),
+        @Index(name = "idx_conversation_key_id", columnList = "conversation_key, id"),
+        @Index(name = "idx_conv_key_recipient_read", columnList = "conversation_key, recipient_id, is_read"),
         @Index(name = "idx_sender_id", columnList = "sender_id"),
         @Index(name = "idx_recipient_id", columnList = "recipient_id")
 })
@@ -54,8 +55,9 @@ public class CommunicationPortal {
     @Column(name = "message_type")
     private MessageType messageType = MessageType.TEXT;
 
-    @Column(name = "conversation_id")
-    private String conversationId;
+    // ConversationKey.of(sender, recipient) — the "a_b" string only exists in the API
+    @Column(name = "conversation_key")
+    private Long conversationKey;
 
     @Column(name = "attachment_name")
     private String attachmentName;
@@ -63,6 +65,19 @@ public class CommunicationPortal {
     @Column(name = "attachment_type")
     private String attachmentType;
 
+    // SHA-256 of the content — the file itself lives in the AttachmentStore
+    @Column(name = "attachment_key", length = 64)
+    private String attachmentKey;
+
+    @Column(name = "attachment_size")
+    private Long attachmentSize;
+
+    // small JPEG preview of IMAGE attachments, also in the AttachmentStore; filled in after send
+    @Column(name = "thumbnail_key", length = 64)
+    private String thumbnailKey;
+
+    // legacy: attachments stored inline before the AttachmentStore existed.
+    // AttachmentMigrationService moves these out and nulls the column.
     @Lob
     @Column(name = "attachment_data", columnDefinition = "LONGBLOB")
     private byte[] attachmentData;
@@ -76,10 +91,8 @@ public class CommunicationPortal {
         if (messageType == null) {
             messageType = MessageType.TEXT;
         }
-        if (conversationId == null && senderId != null && recipientId != null) {
-            long smaller = Math.min(senderId, recipientId);
-            long larger = Math.max(senderId, recipientId);
-            conversationId = smaller + "_" + larger;
+        if (conversationKey == null && senderId != null && recipientId != null) {
+            conversationKey = ConversationKey.of(senderId, recipientId);
         }
     }
 
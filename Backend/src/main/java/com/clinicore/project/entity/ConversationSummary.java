@@ -0,0 +1,55 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// one row per (user, conversation) — the inbox view reads these instead of aggregating communication_portal
+// kept in sync by MessageService on every send and mark-as-read
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@SuppressWarnings("JpaDataSourceORMInspection")
+@Table(name = "conversation_summary",
+        uniqueConstraints = @UniqueConstraint(name = "uk_summary_user_conversation_key", columnNames = {"user_id", "conversation_key"}),
+        indexes = @Index(name = "idx_summary_user_last_at", columnList = "user_id, last_message_at"))
+public class ConversationSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // whose inbox this row belongs to
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // see ConversationKey; filled in for pre-existing rows by ConversationKeyMigration
+    @Column(name = "conversation_key")
+    private Long conversationKey;
+
+    @Column(name = "other_user_id", nullable = false)
+    private Long otherUserId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+
+    // copy of the last message, still encrypted (same value as communication_portal.message)
+    @Column(name = "last_message", columnDefinition = "TEXT")
+    private String lastMessage;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_message_type")
+    private CommunicationPortal.MessageType lastMessageType;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    // unread messages for user_id in this conversation
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+}
@@ -30,6 +30,10 @@ public class Document {
 
     private String type;
 
+    // SHA-256 of the plaintext — used as the strong ETag for /file without reading the blob
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(updatable = false)
     private LocalDateTime uploaded_at;
 
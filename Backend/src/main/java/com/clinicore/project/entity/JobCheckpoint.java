@@ -0,0 +1,35 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// where a background job that walks a table by id has got to, so a restart or the next run picks up from there
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+
+    // e.g. "message_archive"
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    // highest id the job has finished with
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    // for one-off jobs: set once they've run to the end
+    @Column(name = "completed", nullable = false)
+    private Boolean completed;
+
+    // when the current walk started from the beginning
+    @Column(name = "pass_started_at")
+    private LocalDateTime passStartedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -32,6 +32,12 @@ public class MedicalProfile {
     @Column
     private LocalDateTime updatedAt;
 
+    // bumped by ResidentChangeTracker on every change to anything the resident's full-details view shows
+    // (the ETag of /api/residents/full/{id}); only ever written by that UPDATE, never by entity saves
+    @Column(name = "details_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long detailsVersion;
+
     // 1:1 relationship with resident (1 resident : 1 medical profile), thus join by resID
     // MedicalProfile owns the relationship to Capability, MedicalServices, MedicalRecord, and Medications
     // When a medical profile is deleted, all related child entities delete
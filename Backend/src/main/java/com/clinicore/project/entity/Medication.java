@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Table(name = "medication", indexes = {
     @Index(name = "idx_medication_intake_status", columnList = "intake_status"),
-    @Index(name = "idx_medication_medical_profile_id", columnList = "medical_profile_id")
+    @Index(name = "idx_medication_profile_status", columnList = "medical_profile_id, intake_status")
 })
 public class Medication {
 
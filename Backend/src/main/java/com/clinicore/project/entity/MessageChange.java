@@ -0,0 +1,45 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// per-user feed of changes to existing messages (read state), read by /chat/sync.
+// new messages aren't logged here — sync reads those straight from communication_portal by id
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "message_change", indexes = {
+        @Index(name = "idx_message_change_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_message_change_changed_at", columnList = "changed_at")
+})
+public class MessageChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // whose feed this belongs to
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false)
+    private ChangeType changeType;
+
+    @Column(name = "conversation_key")
+    private Long conversationKey;
+
+    // who caused the change (the reader for READ)
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    public enum ChangeType {
+        READ
+    }
+}
@@ -0,0 +1,26 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// last unread-messages digest mailed to a user, so the next one only goes out for newer activity
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "message_digest_state")
+public class MessageDigestState {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // newest conversation activity covered by the last digest (conversation_summary.last_message_id)
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_sent_at", nullable = false)
+    private LocalDateTime lastSentAt;
+}
@@ -0,0 +1,23 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// blind index for message search: one row per (participant, word, message).
+// token_hash is a keyed HMAC of the word, so the table never holds message text
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "message_search_token", indexes = {
+        @Index(name = "idx_search_token_message_id", columnList = "message_id")
+})
+public class MessageSearchToken {
+
+    @EmbeddedId
+    private MessageSearchTokenId id;
+}
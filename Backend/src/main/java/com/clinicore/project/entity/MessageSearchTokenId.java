@@ -0,0 +1,28 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// composite key for message_search_token — column order is the search path: user, then token, then message
+@Embeddable
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class MessageSearchTokenId implements Serializable {
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "token_hash")
+    private Long tokenHash;
+
+    @Column(name = "message_id")
+    private Long messageId;
+}
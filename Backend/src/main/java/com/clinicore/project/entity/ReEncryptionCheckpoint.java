@@ -0,0 +1,33 @@
+package com.clinicore.project.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// progress of the key-rotation job per table, so a restart picks up where it stopped
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "reencryption_checkpoint")
+public class ReEncryptionCheckpoint {
+
+    // table being walked, e.g. "communication_portal"
+    @Id
+    @Column(name = "table_name", length = 64)
+    private String tableName;
+
+    // key the walk is moving rows to — a new active key restarts the walk from id 0
+    @Column(name = "target_key_id", nullable = false, length = 16)
+    private String targetKeyId;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "completed", nullable = false)
+    private Boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -4,6 +4,7 @@ import com.clinicore.project.entity.Allergy;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +15,11 @@ public interface AllergyRepository extends JpaRepository<Allergy, Long> {
      */
     List<Allergy> findByResidentId(Long residentId);
 
+    /**
+     * Find all allergies for a batch of residents
+     */
+    List<Allergy> findByResidentIdIn(Collection<Long> residentIds);
+
     /**
      * Find allergies by severity level
      */
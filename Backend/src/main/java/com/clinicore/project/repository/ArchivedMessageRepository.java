@@ -0,0 +1,85 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.ArchivedMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Long>, ArchivedMessageRepositoryCustom {
+
+    /**
+     * Archived part of a conversation — same keyset paging as MessagesRepository,
+     * on idx_archive_conversation_key_id, so MessageService can merge the two tiers by id.
+     */
+    List<ArchivedMessage> findByConversationKeyOrderByIdAsc(Long conversationKey);
+
+    List<ArchivedMessage> findByConversationKeyOrderByIdDesc(Long conversationKey, Pageable pageable);
+
+    List<ArchivedMessage> findByConversationKeyAndIdLessThanOrderByIdDesc(Long conversationKey, Long id, Pageable pageable);
+
+    List<ArchivedMessage> findByConversationKeyAndIdGreaterThanOrderByIdAsc(Long conversationKey, Long id, Pageable pageable);
+
+    /**
+     * Delta sync over archived history, same shape as MessagesRepository.findForUserAfterId. A cursor newer
+     * than everything archived makes both halves empty index ranges.
+     */
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT * FROM communication_portal_archive WHERE sender_id = :userId AND id > :afterId ORDER BY id LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM communication_portal_archive WHERE recipient_id = :userId AND sender_id <> :userId " +
+            "AND id > :afterId ORDER BY id LIMIT :limit)" +
+            ") am ORDER BY am.id LIMIT :limit", nativeQuery = true)
+    List<ArchivedMessage> findForUserAfterId(@Param("userId") Long userId,
+                                             @Param("afterId") Long afterId,
+                                             @Param("limit") int limit);
+
+    /**
+     * Search hits that point at archived messages.
+     */
+    @Query("SELECT am.id AS id, am.conversationKey AS conversationKey, am.sentAt AS sentAt " +
+            "FROM ArchivedMessage am WHERE am.id IN :ids ORDER BY am.id DESC")
+    List<MessagesRepository.MessageLocation> findLocationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Search indexing over archived history, same shape as the live table's.
+     */
+    @Query("SELECT am.id AS id, am.senderId AS senderId, am.recipientId AS recipientId, am.message AS message, " +
+            "am.sentAt AS sentAt FROM ArchivedMessage am WHERE am.id < :beforeId ORDER BY am.id DESC")
+    List<MessagesRepository.SearchSource> findSearchSourcesBelowId(@Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT am.id AS id, am.senderId AS senderId, am.recipientId AS recipientId, am.message AS message, " +
+            "am.sentAt AS sentAt FROM ArchivedMessage am WHERE am.id > :afterId ORDER BY am.id")
+    List<MessagesRepository.SearchSource> findSearchSourcesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT MAX(am.id) FROM ArchivedMessage am")
+    Long findMaxId();
+
+    /**
+     * Attachment metadata of an archived message; the file itself stays in the AttachmentStore.
+     */
+    @Query("SELECT am.id AS id, am.senderId AS senderId, am.recipientId AS recipientId, " +
+            "am.attachmentName AS attachmentName, am.attachmentType AS attachmentType, " +
+            "am.attachmentKey AS attachmentKey, am.attachmentSize AS attachmentSize, am.thumbnailKey AS thumbnailKey " +
+            "FROM ArchivedMessage am WHERE am.id = :id")
+    MessagesRepository.AttachmentView findAttachmentById(@Param("id") Long id);
+
+    /**
+     * Key rotation: (id, ciphertext) pairs walked by id.
+     */
+    @Query("SELECT am.id AS id, am.message AS value FROM ArchivedMessage am WHERE am.id > :afterId ORDER BY am.id")
+    List<MessagesRepository.EncryptedValue> findMessagesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Key rotation: compare-and-set, same as the live table.
+     */
+    @Modifying
+    @Query("UPDATE ArchivedMessage am SET am.message = :newValue WHERE am.id = :id AND am.message = :oldValue")
+    int replaceMessageIfUnchanged(@Param("id") Long id, @Param("oldValue") String oldValue, @Param("newValue") String newValue);
+}
@@ -0,0 +1,13 @@
+package com.clinicore.project.repository;
+
+import java.util.Collection;
+
+public interface ArchivedMessageRepositoryCustom {
+
+    /**
+     * Moves the given communication_portal rows into communication_portal_archive (copy, then delete)
+     * in the caller's transaction. Rows that are unread or still hold a legacy inline blob are left
+     * where they are. Returns the message, subject and attachment-name bytes taken out of the live table.
+     */
+    long moveToArchive(Collection<Long> messageIds);
+}
@@ -0,0 +1,46 @@
+package com.clinicore.project.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.Collection;
+
+// Spring Data picks this up as the implementation of ArchivedMessageRepositoryCustom
+class ArchivedMessageRepositoryImpl implements ArchivedMessageRepositoryCustom {
+
+    private static final String COLUMNS = "id, sender_id, sender_role, recipient_id, recipient_role, subject, message, " +
+            "sent_at, read_at, is_read, message_type, conversation_key, attachment_name, attachment_type, " +
+            "attachment_key, attachment_size, thumbnail_key";
+
+    // IGNORE: a row already copied by an earlier run that died before its delete isn't copied twice
+    private static final String COPY_SQL = "INSERT IGNORE INTO communication_portal_archive (" + COLUMNS + ", archived_at) " +
+            "SELECT " + COLUMNS + ", CURRENT_TIMESTAMP FROM communication_portal " +
+            "WHERE id IN (:ids) AND is_read = true AND attachment_data IS NULL";
+
+    // size and delete only look at rows that made it into the archive — a row that turned read
+    // between the copy and the delete must not be deleted uncopied
+    private static final String ARCHIVED_LIVE_ROWS = "FROM communication_portal cp " +
+            "JOIN communication_portal_archive am ON am.id = cp.id WHERE cp.id IN (:ids)";
+
+    private static final String SIZE_SQL = "SELECT COALESCE(SUM(COALESCE(LENGTH(cp.message), 0) " +
+            "+ COALESCE(LENGTH(cp.subject), 0) + COALESCE(LENGTH(cp.attachment_name), 0)), 0) " + ARCHIVED_LIVE_ROWS;
+
+    private static final String DELETE_SQL = "DELETE cp " + ARCHIVED_LIVE_ROWS;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    ArchivedMessageRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long moveToArchive(Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) return 0;
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", messageIds);
+        jdbcTemplate.update(COPY_SQL, params);
+        Long bytes = jdbcTemplate.queryForObject(SIZE_SQL, params, Long.class);
+        jdbcTemplate.update(DELETE_SQL, params);
+        return bytes != null ? bytes : 0;
+    }
+}
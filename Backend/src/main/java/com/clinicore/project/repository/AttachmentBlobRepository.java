@@ -0,0 +1,98 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.AttachmentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String> {
+
+    /**
+     * One more reference to a stored file (MySQL upsert, atomic under concurrent uploads of the same content).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO attachment_blob (content_key, size, ref_count, created_at, updated_at) " +
+            "VALUES (:key, :size, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = CURRENT_TIMESTAMP, " +
+            "size = COALESCE(size, VALUES(size))", nativeQuery = true)
+    void acquire(@Param("key") String key, @Param("size") Long size);
+
+    /**
+     * A stored file whose transaction didn't commit: recorded with no references so the sweep collects it
+     * after the grace period. A row that already exists is left alone — other rows may still point at it.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO attachment_blob (content_key, size, ref_count, created_at, updated_at) " +
+            "VALUES (:key, :size, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count", nativeQuery = true)
+    void recordUnreferenced(@Param("key") String key, @Param("size") Long size);
+
+    /**
+     * One reference fewer. Never goes below zero, so a double release can't hide a live reference.
+     */
+    @Modifying
+    @Query(value = "UPDATE attachment_blob SET ref_count = ref_count - 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE content_key = :key AND ref_count > 0", nativeQuery = true)
+    int release(@Param("key") String key);
+
+    /**
+     * Sweep candidates: unreferenced since before the cutoff. Range scan on idx_attachment_blob_refs_updated.
+     */
+    @Query(value = "SELECT content_key FROM attachment_blob WHERE ref_count = 0 AND updated_at < :cutoff " +
+            "LIMIT :limit", nativeQuery = true)
+    List<String> findUnreferencedSince(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Sweep: locks the row and re-checks it is still unreferenced — an upload of the same content
+     * waits on this lock and then re-creates the row.
+     */
+    @Query(value = "SELECT ref_count FROM attachment_blob WHERE content_key = :key FOR UPDATE", nativeQuery = true)
+    Long lockRefCount(@Param("key") String key);
+
+    /**
+     * Dedup stats over live files: references, files, bytes referenced, bytes stored.
+     */
+    interface DedupStats {
+        Long getRefs();
+        Long getFiles();
+        Long getLogicalBytes();
+        Long getStoredBytes();
+    }
+
+    @Query(value = "SELECT COALESCE(SUM(ref_count), 0) AS refs, COUNT(*) AS files, " +
+            "COALESCE(SUM(COALESCE(size, 0) * ref_count), 0) AS logicalBytes, COALESCE(SUM(size), 0) AS storedBytes " +
+            "FROM attachment_blob WHERE ref_count > 0", nativeQuery = true)
+    DedupStats findDedupStats();
+
+    /**
+     * Backfill, step 1: zero every count, so files no row points at any more end up unreferenced
+     * (updated_at is bumped so they still get the sweep's full grace period).
+     */
+    @Modifying
+    @Query(value = "UPDATE attachment_blob SET ref_count = 0, updated_at = CURRENT_TIMESTAMP WHERE ref_count > 0",
+            nativeQuery = true)
+    int resetRefCounts();
+
+    /**
+     * Backfill, step 2: counts from every column that holds a store key. Counts are set, not added,
+     * so re-running it converges on the true numbers.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO attachment_blob (content_key, size, ref_count, created_at, updated_at) " +
+            "SELECT refs.content_key, MAX(refs.size), COUNT(*), CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM (" +
+            "SELECT attachment_key AS content_key, attachment_size AS size FROM communication_portal WHERE attachment_key IS NOT NULL " +
+            "UNION ALL SELECT thumbnail_key, NULL FROM communication_portal WHERE thumbnail_key IS NOT NULL " +
+            "UNION ALL SELECT attachment_key, attachment_size FROM communication_portal_archive WHERE attachment_key IS NOT NULL " +
+            "UNION ALL SELECT thumbnail_key, NULL FROM communication_portal_archive WHERE thumbnail_key IS NOT NULL " +
+            "UNION ALL SELECT content_hash, NULL FROM documents WHERE content_hash IS NOT NULL AND document IS NULL" +
+            ") refs GROUP BY refs.content_key " +
+            "ON DUPLICATE KEY UPDATE ref_count = VALUES(ref_count), size = COALESCE(size, VALUES(size))",
+            nativeQuery = true)
+    int backfillFromReferences();
+}
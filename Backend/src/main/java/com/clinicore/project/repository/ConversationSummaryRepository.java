@@ -0,0 +1,104 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.ConversationSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long>,
+        ConversationSummaryRepositoryCustom {
+
+    /**
+     * Inbox for a user, latest conversation on top.
+     * Range scan on idx_summary_user_last_at — cost depends on number of conversations, not messages.
+     */
+    List<ConversationSummary> findByUserIdOrderByLastMessageAtDesc(Long userId);
+
+    @Query("SELECT COALESCE(SUM(cs.unreadCount), 0) FROM ConversationSummary cs WHERE cs.userId = :userId")
+    Long sumUnreadByUserId(@Param("userId") Long userId);
+
+    /**
+     * Insert-or-update one participant's row for a new message (MySQL upsert, atomic under concurrent sends).
+     * The "last message" columns only move forward by message id, so out-of-order commits can't regress them.
+     * last_message_id must be assigned last — MySQL applies the SET list left to right.
+     */
+    String UPSERT_FOR_MESSAGE_SQL = "INSERT INTO conversation_summary " +
+            "(user_id, conversation_key, other_user_id, last_message_id, last_sender_id, last_message, " +
+            "last_message_type, last_message_at, unread_count) " +
+            "VALUES (:userId, :conversationKey, :otherUserId, :messageId, :senderId, :message, " +
+            ":messageType, :sentAt, :unreadDelta) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_sender_id = IF(VALUES(last_message_id) > last_message_id, VALUES(last_sender_id), last_sender_id), " +
+            "last_message = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message), last_message), " +
+            "last_message_type = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message_type), last_message_type), " +
+            "last_message_at = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message_at), last_message_at), " +
+            "unread_count = unread_count + VALUES(unread_count), " +
+            "last_message_id = GREATEST(last_message_id, VALUES(last_message_id))";
+
+    @Modifying
+    @Query(value = UPSERT_FOR_MESSAGE_SQL, nativeQuery = true)
+    void upsertForMessage(@Param("userId") Long userId,
+                          @Param("conversationKey") Long conversationKey,
+                          @Param("otherUserId") Long otherUserId,
+                          @Param("messageId") Long messageId,
+                          @Param("senderId") Long senderId,
+                          @Param("message") String message,
+                          @Param("messageType") String messageType,
+                          @Param("sentAt") LocalDateTime sentAt,
+                          @Param("unreadDelta") int unreadDelta);
+
+    /**
+     * Key rotation: (id, encrypted preview) pairs walked by id.
+     */
+    @Query("SELECT cs.id AS id, cs.lastMessage AS value FROM ConversationSummary cs WHERE cs.id > :afterId ORDER BY cs.id")
+    List<MessagesRepository.EncryptedValue> findPreviewsAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Key rotation: compare-and-set — a preview moved on by a new message since it was read is left alone.
+     */
+    @Modifying
+    @Query("UPDATE ConversationSummary cs SET cs.lastMessage = :newValue WHERE cs.id = :id AND cs.lastMessage = :oldValue")
+    int replacePreviewIfUnchanged(@Param("id") Long id, @Param("oldValue") String oldValue, @Param("newValue") String newValue);
+
+    /**
+     * One user's row for one conversation, via uk_summary_user_conversation_key.
+     */
+    ConversationSummary findByUserIdAndConversationKey(Long userId, Long conversationKey);
+
+    List<ConversationSummary> findByUserIdAndConversationKeyIn(Long userId, Collection<Long> conversationKeys);
+
+    /**
+     * One-time backfill from communication_portal: a row per participant of each conversation's latest message.
+     * INSERT IGNORE so it's safe to re-run and doesn't clobber rows written by live traffic.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO conversation_summary " +
+            "(user_id, conversation_key, other_user_id, last_message_id, last_sender_id, last_message, " +
+            "last_message_type, last_message_at, unread_count) " +
+            "SELECT cp.sender_id, cp.conversation_key, cp.recipient_id, cp.id, cp.sender_id, cp.message, " +
+            "cp.message_type, cp.sent_at, 0 " +
+            "FROM communication_portal cp " +
+            "WHERE cp.id IN (SELECT MAX(cp2.id) FROM communication_portal cp2 GROUP BY cp2.conversation_key) " +
+            "UNION ALL " +
+            "SELECT cp.recipient_id, cp.conversation_key, cp.sender_id, cp.id, cp.sender_id, cp.message, " +
+            "cp.message_type, cp.sent_at, 0 " +
+            "FROM communication_portal cp " +
+            "WHERE cp.id IN (SELECT MAX(cp2.id) FROM communication_portal cp2 GROUP BY cp2.conversation_key)",
+            nativeQuery = true)
+    int backfillFromMessages();
+
+    @Modifying
+    @Query(value = "UPDATE conversation_summary cs SET cs.unread_count = " +
+            "(SELECT COUNT(*) FROM communication_portal cp " +
+            "WHERE cp.conversation_key = cs.conversation_key AND cp.recipient_id = cs.user_id AND cp.is_read = false)",
+            nativeQuery = true)
+    int backfillUnreadCounts();
+}
@@ -0,0 +1,20 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.CommunicationPortal;
+
+import java.util.List;
+
+public interface ConversationSummaryRepositoryCustom {
+
+    /**
+     * Batched form of upsertForMessage for many saved messages at once (e.g. a broadcast):
+     * one JDBC batch covering the sender's and recipient's row of every message.
+     */
+    void upsertAllForMessages(List<CommunicationPortal> messages);
+
+    /**
+     * Recomputes unread_count for the (user, conversation) rows of the given read marks in one batch.
+     * A recount rather than a reset, since messages newer than the mark stay unread.
+     */
+    void recountUnread(List<MessagesRepositoryCustom.ReadMark> marks);
+}
@@ -0,0 +1,62 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.CommunicationPortal;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.List;
+
+// Spring Data picks this up as the implementation of ConversationSummaryRepositoryCustom
+class ConversationSummaryRepositoryImpl implements ConversationSummaryRepositoryCustom {
+
+    private static final String RECOUNT_UNREAD_SQL = "UPDATE conversation_summary cs SET cs.unread_count = " +
+            "(SELECT COUNT(*) FROM communication_portal cp WHERE cp.conversation_key = cs.conversation_key " +
+            "AND cp.recipient_id = cs.user_id AND cp.is_read = false) " +
+            "WHERE cs.user_id = :userId AND cs.conversation_key = :conversationKey";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    ConversationSummaryRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsertAllForMessages(List<CommunicationPortal> messages) {
+        if (messages.isEmpty()) return;
+
+        SqlParameterSource[] batch = new SqlParameterSource[messages.size() * 2];
+        int i = 0;
+        for (CommunicationPortal m : messages) {
+            // same two rows as ConversationSummaryService.recordMessage: sender +0, recipient +1
+            batch[i++] = params(m, m.getSenderId(), m.getRecipientId(), 0);
+            batch[i++] = params(m, m.getRecipientId(), m.getSenderId(), 1);
+        }
+        jdbcTemplate.batchUpdate(ConversationSummaryRepository.UPSERT_FOR_MESSAGE_SQL, batch);
+    }
+
+    @Override
+    public void recountUnread(List<MessagesRepositoryCustom.ReadMark> marks) {
+        if (marks.isEmpty()) return;
+
+        SqlParameterSource[] batch = marks.stream()
+                .map(mark -> new MapSqlParameterSource()
+                        .addValue("userId", mark.userId())
+                        .addValue("conversationKey", mark.conversationKey()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(RECOUNT_UNREAD_SQL, batch);
+    }
+
+    private SqlParameterSource params(CommunicationPortal m, Long userId, Long otherUserId, int unreadDelta) {
+        return new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("conversationKey", m.getConversationKey())
+                .addValue("otherUserId", otherUserId)
+                .addValue("messageId", m.getId())
+                .addValue("senderId", m.getSenderId())
+                .addValue("message", m.getMessage())
+                .addValue("messageType", m.getMessageType() != null ? m.getMessageType().name() : null)
+                .addValue("sentAt", m.getSentAt())
+                .addValue("unreadDelta", unreadDelta);
+    }
+}
@@ -4,6 +4,7 @@ import com.clinicore.project.entity.Diagnosis;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +14,9 @@ public interface DiagnosisRepository extends JpaRepository<Diagnosis, Long> {
      * Find all diagnoses for a specific resident
      */
     List<Diagnosis> findByResidentId(Long residentId);
+
+    /**
+     * Find all diagnoses for a batch of residents
+     */
+    List<Diagnosis> findByResidentIdIn(Collection<Long> residentIds);
 }
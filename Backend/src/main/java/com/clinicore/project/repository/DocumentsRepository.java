@@ -1,12 +1,15 @@
 package com.clinicore.project.repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import com.clinicore.project.entity.Document;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface DocumentsRepository extends JpaRepository<Document, Long> {
@@ -22,6 +25,29 @@ public interface DocumentsRepository extends JpaRepository<Document, Long> {
         LocalDateTime getUploaded_at();
     }
 
+    /**
+     * Projection for serving a document file: access checks and ETag without loading the blob
+     */
+    interface DocumentFileInfo {
+        Long getId();
+        String getTitle();
+        String getType();
+        Long getResidentId();
+        String getContentHash();
+        // true while the content is still in the documents.document column rather than the AttachmentStore
+        Boolean getInline();
+    }
+
+    @Query("SELECT d.id as id, d.title as title, d.type as type, d.residentId as residentId, d.contentHash as contentHash, " +
+            "CASE WHEN d.document IS NULL THEN false ELSE true END as inline FROM Document d WHERE d.id = :id")
+    Optional<DocumentFileInfo> findFileInfoById(@Param("id") Long id);
+
+    /**
+     * Only the binary content of a document
+     */
+    @Query("SELECT d.document FROM Document d WHERE d.id = :id")
+    byte[] findContentById(@Param("id") Long id);
+
     /**
      * Get all document metadata without loading binary content
      */
@@ -40,8 +66,68 @@ public interface DocumentsRepository extends JpaRepository<Document, Long> {
     List<Document> findByResidentId(Long residentId);
 
     /**
-     * Delete all documents for a specific resident (e.g., if they are discharged)
+     * Ids of inline documents the at-rest backfill still has to touch: stored as plaintext (no streaming-encryption
+     * header), or encrypted before content hashing existed and so without a content_hash / ETag.
+     * Only reads the first 4 bytes of each blob.
+     */
+    @Query(value = "SELECT d.id FROM documents d WHERE d.id > :afterId AND d.document IS NOT NULL " +
+            "AND (SUBSTRING(d.document, 1, 4) <> 'CCS1' OR d.content_hash IS NULL) ORDER BY d.id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findDocumentIdsToBackfill(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * Ids of documents whose content is still inline, for the move into the AttachmentStore
+     */
+    @Query(value = "SELECT d.id FROM documents d WHERE d.id > :afterId AND d.document IS NOT NULL " +
+            "ORDER BY d.id LIMIT :limit", nativeQuery = true)
+    List<Long> findInlineDocumentIds(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * At-rest backfill: swap the inline blob for its ciphertext. Conditional on the row still being inline,
+     * so it can't write bytes back over a concurrent moveInlineToStore (0 = lost the race, nothing changed)
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.document = :ciphertext, d.contentHash = COALESCE(d.contentHash, :contentHash) " +
+            "WHERE d.id = :id AND d.document IS NOT NULL")
+    int replaceInlineContent(@Param("id") Long id, @Param("ciphertext") byte[] ciphertext,
+                             @Param("contentHash") String contentHash);
+
+    /**
+     * Hash backfill for rows encrypted before content hashing; leaves everything else alone
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.contentHash = :contentHash WHERE d.id = :id AND d.contentHash IS NULL")
+    int setContentHashIfMissing(@Param("id") Long id, @Param("contentHash") String contentHash);
+
+    /**
+     * Migration: point the row at the stored file and drop the inline blob, only if it's still inline
+     * (0 = another run got there first)
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.contentHash = :contentHash, d.document = NULL WHERE d.id = :id AND d.document IS NOT NULL")
+    int moveInlineToStore(@Param("id") Long id, @Param("contentHash") String contentHash);
+
+    /**
+     * Locks a document before deleting it, so a concurrent move into the store can't acquire a
+     * reference to a row that is going away
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id = :id")
+    Optional<Document> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Locks all of a resident's documents and returns the store key of each one that lives in the
+     * AttachmentStore (null for inline rows), one entry per row — each is one reference to release
+     */
+    @Query(value = "SELECT CASE WHEN d.document IS NULL THEN d.content_hash END FROM documents d " +
+            "WHERE d.resident_id = :residentId FOR UPDATE", nativeQuery = true)
+    List<String> lockStoredContentHashesByResidentId(@Param("residentId") Long residentId);
+
+    /**
+     * Delete all documents for a specific resident (e.g., if they are discharged).
+     * Doesn't release stored files — go through DocumentService.deleteDocumentsForResident.
      */
-    @Transactional
-    void deleteByResidentId(Long residentId);
+    @Modifying
+    @Query("DELETE FROM Document d WHERE d.residentId = :residentId")
+    int deleteByResidentId(@Param("residentId") Long residentId);
 }
\ No newline at end of file
@@ -2,11 +2,13 @@ package com.clinicore.project.repository;
 
 import com.clinicore.project.entity.MedicalProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,29 +16,48 @@ import java.util.Optional;
 public interface MedicalProfileRepository extends JpaRepository<MedicalProfile, Long> {
 
     /**
-     * Load all medical profiles with their OneToOne children and medications in one query.
-     * Avoids N+1: without this, each findById triggers 3 extra queries (capability, services, record)
-     * plus a lazy load for medications.
+     * Load all medical profiles with their OneToOne children (capability, services, record) in one query.
+     * One row per profile. Medications are NOT fetched here — joining them repeated every profile column
+     * once per medication (~15 rows per resident); load them with MedicationRepository.findByResidentIdsWithInventory.
      */
-    @Query("SELECT DISTINCT p FROM MedicalProfile p " +
+    @Query("SELECT p FROM MedicalProfile p " +
            "LEFT JOIN FETCH p.capability " +
            "LEFT JOIN FETCH p.medicalServices " +
-           "LEFT JOIN FETCH p.medicalRecord " +
-           "LEFT JOIN FETCH p.medications m " +
-           "LEFT JOIN FETCH m.medicationInventory mi " +
-           "LEFT JOIN FETCH mi.item")
-    List<MedicalProfile> findAllWithFullDetails();
+           "LEFT JOIN FETCH p.medicalRecord")
+    List<MedicalProfile> findAllWithProfileDetails();
 
     /**
-     * Same as findAllWithFullDetails but for a single resident.
+     * Same as findAllWithProfileDetails but for a single resident.
      */
-    @Query("SELECT DISTINCT p FROM MedicalProfile p " +
+    @Query("SELECT p FROM MedicalProfile p " +
            "LEFT JOIN FETCH p.capability " +
            "LEFT JOIN FETCH p.medicalServices " +
            "LEFT JOIN FETCH p.medicalRecord " +
-           "LEFT JOIN FETCH p.medications m " +
-           "LEFT JOIN FETCH m.medicationInventory mi " +
-           "LEFT JOIN FETCH mi.item " +
            "WHERE p.residentId = :residentId")
-    Optional<MedicalProfile> findByResidentIdWithFullDetails(@Param("residentId") Long residentId);
+    Optional<MedicalProfile> findByResidentIdWithProfileDetails(@Param("residentId") Long residentId);
+
+    /**
+     * Same as findAllWithProfileDetails but for a batch of residents.
+     */
+    @Query("SELECT p FROM MedicalProfile p " +
+           "LEFT JOIN FETCH p.capability " +
+           "LEFT JOIN FETCH p.medicalServices " +
+           "LEFT JOIN FETCH p.medicalRecord " +
+           "WHERE p.residentId IN :residentIds")
+    List<MedicalProfile> findByResidentIdsWithProfileDetails(@Param("residentIds") Collection<Long> residentIds);
+
+    /**
+     * Current details version of a resident (primary key lookup), empty if they have no medical profile.
+     */
+    @Query("SELECT p.detailsVersion FROM MedicalProfile p WHERE p.residentId = :residentId")
+    Optional<Long> findDetailsVersion(@Param("residentId") Long residentId);
+
+    /**
+     * Moves the details version (and updatedAt) of the given residents forward.
+     * An in-database increment, so concurrent writers never lose a bump.
+     */
+    @Modifying
+    @Query("UPDATE MedicalProfile p SET p.detailsVersion = p.detailsVersion + 1, p.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE p.residentId IN :residentIds")
+    int bumpDetailsVersions(@Param("residentIds") Collection<Long> residentIds);
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,11 +15,31 @@ import java.util.Optional;
 public interface MedicationRepository extends JpaRepository<Medication, Long> {
 
     /**
-     * Load all medications with their medical profile in one query.
-     * Avoids N+1 when grouping medications by resident (getMedicalProfile() is LAZY).
+     * Medication count per resident and intake status, computed in the database.
+     * A few rows per resident instead of every medication row; covered by idx_medication_profile_status.
      */
-    @Query("SELECT m FROM Medication m LEFT JOIN FETCH m.medicalProfile")
-    List<Medication> findAllWithMedicalProfile();
+    @Query("SELECT m.medicalProfile.residentId AS residentId, m.intakeStatus AS intakeStatus, COUNT(m) AS total " +
+           "FROM Medication m " +
+           "WHERE m.medicalProfile IS NOT NULL " +
+           "GROUP BY m.medicalProfile.residentId, m.intakeStatus")
+    List<IntakeStatusCount> countByResidentAndIntakeStatus();
+
+    interface IntakeStatusCount {
+        Long getResidentId();
+        Medication.IntakeStatus getIntakeStatus();
+        Long getTotal();
+    }
+
+    /**
+     * Load the medications of a batch of residents with their inventory item, in one IN-list query.
+     * One row per medication (inventory and item are to-one). Callers split large id lists into chunks.
+     */
+    @Query("SELECT m FROM Medication m " +
+           "LEFT JOIN FETCH m.medicationInventory mi " +
+           "LEFT JOIN FETCH mi.item " +
+           "WHERE m.medicalProfile.residentId IN :residentIds " +
+           "ORDER BY m.id")
+    List<Medication> findByResidentIdsWithInventory(@Param("residentIds") Collection<Long> residentIds);
 
     /**
      * List all medications for a resident (via medical profile)
@@ -32,6 +53,12 @@ public interface MedicationRepository extends JpaRepository<Medication, Long> {
     @Query("SELECT m FROM Medication m JOIN FETCH m.medicalProfile WHERE m.id = :id")
     Optional<Medication> findByIdWithProfile(@Param("id") Long id);
 
+    /**
+     * Residents with at least one medication on this inventory item (they all show its name and quantity)
+     */
+    @Query("SELECT DISTINCT m.medicalProfile.residentId FROM Medication m WHERE m.medicationInventory.id = :itemId")
+    List<Long> findResidentIdsByInventoryItem(@Param("itemId") Long itemId);
+
     /**
      * Query which medication is in medication inventory; for inventory tracking
      */
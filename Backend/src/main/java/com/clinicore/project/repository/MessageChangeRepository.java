@@ -0,0 +1,35 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.MessageChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MessageChangeRepository extends JpaRepository<MessageChange, Long> {
+
+    /**
+     * A user's changes after a cursor, oldest first.
+     * Range scan on idx_message_change_user_id (user_id, id).
+     */
+    List<MessageChange> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId, Pageable pageable);
+
+    /**
+     * Oldest change still kept — cursors below it may have missed pruned rows.
+     */
+    @Query("SELECT MIN(mc.id) FROM MessageChange mc")
+    Long findMinId();
+
+    /**
+     * Retention: drop changes older than the cutoff.
+     */
+    @Modifying
+    @Query("DELETE FROM MessageChange mc WHERE mc.changedAt < :cutoff")
+    int deleteChangedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,52 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.MessageDigestState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MessageDigestStateRepository extends JpaRepository<MessageDigestState, Long> {
+
+    /**
+     * A user due a digest and the newest activity it will cover
+     */
+    interface DigestCandidate {
+        Long getUserId();
+        Long getLastMessageId();
+    }
+
+    /**
+     * Users with unread messages in a conversation that has gone quiet (no activity since quietSince),
+     * with activity newer than their last digest, and no digest since notBefore.
+     * Reads conversation_summary, one row per (user, conversation), instead of scanning communication_portal.
+     * Pages by user id after afterUserId, so callers can walk past users they skip without starving later ones.
+     */
+    @Query(value = "SELECT cs.user_id AS userId, MAX(cs.last_message_id) AS lastMessageId " +
+            "FROM conversation_summary cs LEFT JOIN message_digest_state d ON d.user_id = cs.user_id " +
+            "WHERE cs.user_id > :afterUserId AND cs.unread_count > 0 AND cs.last_message_at < :quietSince " +
+            "AND cs.last_message_id > COALESCE(d.last_message_id, 0) " +
+            "AND (d.last_sent_at IS NULL OR d.last_sent_at < :notBefore) " +
+            "GROUP BY cs.user_id ORDER BY cs.user_id LIMIT :limit", nativeQuery = true)
+    List<DigestCandidate> findDigestCandidates(@Param("afterUserId") Long afterUserId,
+                                               @Param("quietSince") LocalDateTime quietSince,
+                                               @Param("notBefore") LocalDateTime notBefore,
+                                               @Param("limit") int limit);
+
+    /**
+     * Records a sent digest (MySQL upsert). The message id only moves forward.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO message_digest_state (user_id, last_message_id, last_sent_at) " +
+            "VALUES (:userId, :lastMessageId, :sentAt) " +
+            "ON DUPLICATE KEY UPDATE last_message_id = GREATEST(last_message_id, VALUES(last_message_id)), " +
+            "last_sent_at = VALUES(last_sent_at)", nativeQuery = true)
+    void markSent(@Param("userId") Long userId,
+                  @Param("lastMessageId") Long lastMessageId,
+                  @Param("sentAt") LocalDateTime sentAt);
+}
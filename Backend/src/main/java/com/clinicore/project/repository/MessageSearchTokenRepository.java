@@ -0,0 +1,37 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.MessageSearchToken;
+import com.clinicore.project.entity.MessageSearchTokenId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MessageSearchTokenRepository extends JpaRepository<MessageSearchToken, MessageSearchTokenId>,
+        MessageSearchTokenRepositoryCustom {
+
+    /**
+     * Ids of the user's messages containing every one of the given tokens, newest first.
+     * One primary-key range per token (user_id, token_hash, ...); no message rows are touched.
+     */
+    @Query("SELECT t.id.messageId FROM MessageSearchToken t " +
+            "WHERE t.id.userId = :userId AND t.id.tokenHash IN :tokenHashes " +
+            "GROUP BY t.id.messageId HAVING COUNT(t) = :tokenCount " +
+            "ORDER BY t.id.messageId DESC")
+    List<Long> findMessageIdsWithAllTokens(@Param("userId") Long userId,
+                                           @Param("tokenHashes") Collection<Long> tokenHashes,
+                                           @Param("tokenCount") long tokenCount,
+                                           Pageable pageable);
+
+    /**
+     * Lowest message id in the index. Only read once, to seed the job_checkpoint rows on a database
+     * indexed before those existed.
+     */
+    @Query("SELECT MIN(t.id.messageId) FROM MessageSearchToken t")
+    Long findMinMessageId();
+}
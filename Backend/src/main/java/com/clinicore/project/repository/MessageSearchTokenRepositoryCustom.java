@@ -0,0 +1,14 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.MessageSearchTokenId;
+
+import java.util.List;
+
+public interface MessageSearchTokenRepositoryCustom {
+
+    /**
+     * Adds index rows in one JDBC batch. Rows already present are skipped (INSERT IGNORE),
+     * so re-indexing a message is harmless.
+     */
+    void insertAllIgnoringDuplicates(List<MessageSearchTokenId> tokens);
+}
@@ -0,0 +1,29 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.MessageSearchTokenId;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+// Spring Data picks this up as the implementation of MessageSearchTokenRepositoryCustom
+class MessageSearchTokenRepositoryImpl implements MessageSearchTokenRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO message_search_token (user_id, token_hash, message_id) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    MessageSearchTokenRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAllIgnoringDuplicates(List<MessageSearchTokenId> tokens) {
+        if (tokens.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, tokens, 1000, (ps, token) -> {
+            ps.setLong(1, token.getUserId());
+            ps.setLong(2, token.getTokenHash());
+            ps.setLong(3, token.getMessageId());
+        });
+    }
+}
@@ -1,55 +1,153 @@
 package com.clinicore.project.repository;
 
 import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.util.ConversationKey;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface MessagesRepository extends JpaRepository<CommunicationPortal, Long> {
+public interface MessagesRepository extends JpaRepository<CommunicationPortal, Long>, MessagesRepositoryCustom {
 
-    List<CommunicationPortal> findByConversationIdOrderBySentAtAsc(String conversationId);
+    List<CommunicationPortal> findByConversationKeyOrderBySentAtAsc(Long conversationKey);
 
-    @Query("SELECT cp FROM CommunicationPortal cp WHERE cp.id IN " +
-            "(SELECT MAX(cp2.id) FROM CommunicationPortal cp2 " +
-            "WHERE cp2.senderId = :userId OR cp2.recipientId = :userId " +
-            "GROUP BY cp2.conversationId) " +
-            "ORDER BY cp.sentAt DESC")
-    List<CommunicationPortal> findUserConversations(@Param("userId") Long userId);
+    // keyset paging on (conversation_key, id) — ids are IDENTITY so they follow send order
+    List<CommunicationPortal> findByConversationKeyOrderByIdDesc(Long conversationKey, Pageable pageable);
 
-    @Query("SELECT COUNT(cp) FROM CommunicationPortal cp " +
-            "WHERE cp.recipientId = :userId AND cp.isRead = false")
-    Integer countTotalUnread(@Param("userId") Long userId);
+    List<CommunicationPortal> findByConversationKeyAndIdLessThanOrderByIdDesc(Long conversationKey, Long id, Pageable pageable);
+
+    List<CommunicationPortal> findByConversationKeyAndIdGreaterThanOrderByIdAsc(Long conversationKey, Long id, Pageable pageable);
 
     // batch: unread counts grouped by conversation
-    @Query("SELECT cp.conversationId, COUNT(cp) FROM CommunicationPortal cp " +
+    @Query("SELECT cp.conversationKey, COUNT(cp) FROM CommunicationPortal cp " +
             "WHERE cp.recipientId = :userId AND cp.isRead = false " +
-            "GROUP BY cp.conversationId")
+            "GROUP BY cp.conversationKey")
     List<Object[]> countUnreadByConversation(@Param("userId") Long userId);
 
-    // bulk mark as read in one query
+    // unread messages newer than a pending read mark (see ReadReceiptCoalescer)
+    long countByConversationKeyAndRecipientIdAndIsReadFalseAndIdGreaterThan(Long conversationKey, Long recipientId, Long id);
+
+    /**
+     * Delta sync: a user's sent and received messages after an id, oldest first.
+     * Two range scans — idx_sender_id and idx_recipient_id both end in the primary key,
+     * so (user, id > :afterId) is an index range in each — merged and capped at :limit.
+     */
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT * FROM communication_portal WHERE sender_id = :userId AND id > :afterId ORDER BY id LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM communication_portal WHERE recipient_id = :userId AND sender_id <> :userId " +
+            "AND id > :afterId ORDER BY id LIMIT :limit)" +
+            ") cp ORDER BY cp.id LIMIT :limit", nativeQuery = true)
+    List<CommunicationPortal> findForUserAfterId(@Param("userId") Long userId,
+                                                 @Param("afterId") Long afterId,
+                                                 @Param("limit") int limit);
+
+    // archiving: walked by primary key from the oldest row; MessageArchiveService stops at the age cutoff
+    interface ArchiveCandidate {
+        Long getId();
+        LocalDateTime getSentAt();
+        Boolean getIsRead();
+        Boolean getHasLegacyBlob();
+    }
+
+    @Query("SELECT cp.id AS id, cp.sentAt AS sentAt, cp.isRead AS isRead, " +
+            "CASE WHEN cp.attachmentData IS NULL THEN false ELSE true END AS hasLegacyBlob " +
+            "FROM CommunicationPortal cp WHERE cp.id > :afterId ORDER BY cp.id")
+    List<ArchiveCandidate> findArchiveCandidatesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // search indexing: only what tokenizing needs (no attachment columns). the backfill reads below an id,
+    // newest first; the catch-up reads above its checkpoint, oldest first
+    interface SearchSource {
+        Long getId();
+        Long getSenderId();
+        Long getRecipientId();
+        String getMessage();
+        LocalDateTime getSentAt();
+    }
+
+    @Query("SELECT cp.id AS id, cp.senderId AS senderId, cp.recipientId AS recipientId, cp.message AS message, " +
+            "cp.sentAt AS sentAt FROM CommunicationPortal cp WHERE cp.id < :beforeId ORDER BY cp.id DESC")
+    List<SearchSource> findSearchSourcesBelowId(@Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT cp.id AS id, cp.senderId AS senderId, cp.recipientId AS recipientId, cp.message AS message, " +
+            "cp.sentAt AS sentAt FROM CommunicationPortal cp WHERE cp.id > :afterId ORDER BY cp.id")
+    List<SearchSource> findSearchSourcesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT MAX(cp.id) FROM CommunicationPortal cp")
+    Long findMaxId();
+
+    // search results: where each hit lives, without loading or decrypting the messages
+    interface MessageLocation {
+        Long getId();
+        Long getConversationKey();
+        LocalDateTime getSentAt();
+
+        default String getConversationId() {
+            return ConversationKey.format(getConversationKey());
+        }
+    }
+
+    @Query("SELECT cp.id AS id, cp.conversationKey AS conversationKey, cp.sentAt AS sentAt " +
+            "FROM CommunicationPortal cp WHERE cp.id IN :ids ORDER BY cp.id DESC")
+    List<MessageLocation> findLocationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // key rotation: (id, ciphertext) pairs walked by id, no other columns loaded
+    interface EncryptedValue {
+        Long getId();
+        String getValue();
+    }
+
+    @Query("SELECT cp.id AS id, cp.message AS value FROM CommunicationPortal cp WHERE cp.id > :afterId ORDER BY cp.id")
+    List<EncryptedValue> findMessagesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // key rotation: compare-and-set, so a row changed since it was read is left for the next pass
     @Modifying
-    @Query("UPDATE CommunicationPortal cp SET cp.isRead = true, cp.readAt = CURRENT_TIMESTAMP " +
-            "WHERE cp.conversationId = :conversationId AND cp.recipientId = :userId AND cp.isRead = false")
-    void bulkMarkAsRead(@Param("conversationId") String conversationId, @Param("userId") Long userId);
+    @Query("UPDATE CommunicationPortal cp SET cp.message = :newValue WHERE cp.id = :id AND cp.message = :oldValue")
+    int replaceMessageIfUnchanged(@Param("id") Long id, @Param("oldValue") String oldValue, @Param("newValue") String newValue);
 
-    // attachment-only projection: avoids loading the full entity (including other BLOB columns) when streaming
+    // attachment metadata projection — the content is read from the AttachmentStore (or the legacy column)
     interface AttachmentView {
         Long getId();
         Long getSenderId();
         Long getRecipientId();
         String getAttachmentName();
         String getAttachmentType();
-        byte[] getAttachmentData();
+        String getAttachmentKey();
+        Long getAttachmentSize();
+        String getThumbnailKey();
     }
 
     @Query("SELECT cp.id AS id, cp.senderId AS senderId, cp.recipientId AS recipientId, " +
             "cp.attachmentName AS attachmentName, cp.attachmentType AS attachmentType, " +
-            "cp.attachmentData AS attachmentData " +
+            "cp.attachmentKey AS attachmentKey, cp.attachmentSize AS attachmentSize, cp.thumbnailKey AS thumbnailKey " +
             "FROM CommunicationPortal cp WHERE cp.id = :id")
     AttachmentView findAttachmentById(@Param("id") Long id);
-}
\ No newline at end of file
+
+    // legacy inline blob, only read for rows the migrator hasn't reached yet
+    @Query("SELECT cp.attachmentData FROM CommunicationPortal cp WHERE cp.id = :id")
+    byte[] findAttachmentDataById(@Param("id") Long id);
+
+    // migration: next batch of rows still holding an inline blob, walked by id
+    @Query("SELECT cp.id FROM CommunicationPortal cp " +
+            "WHERE cp.id > :afterId AND cp.attachmentKey IS NULL AND cp.attachmentData IS NOT NULL " +
+            "ORDER BY cp.id")
+    List<Long> findLegacyAttachmentIds(@Param("afterId") Long afterId, Pageable pageable);
+
+    // migration: point the row at the stored file and drop the blob (no-op if another run got there first)
+    @Modifying
+    @Query("UPDATE CommunicationPortal cp SET cp.attachmentKey = :key, cp.attachmentSize = :size, " +
+            "cp.attachmentData = NULL WHERE cp.id = :id AND cp.attachmentKey IS NULL")
+    int moveAttachmentToStore(@Param("id") Long id, @Param("key") String key, @Param("size") Long size);
+
+    // thumbnail pipeline: attach the generated preview to its message (only once, so its reference is counted once)
+    @Modifying
+    @Query("UPDATE CommunicationPortal cp SET cp.thumbnailKey = :key WHERE cp.id = :id AND cp.thumbnailKey IS NULL")
+    int setThumbnailKey(@Param("id") Long id, @Param("key") String key);
+}
@@ -0,0 +1,31 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.CommunicationPortal;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MessagesRepositoryCustom {
+
+    /**
+     * Inserts many messages with one JDBC batch instead of a save() round trip per row
+     * (IDENTITY ids stop Hibernate from batching inserts). Ids are set on the given entities by
+     * reading the new rows back, matched on conversation key + ciphertext, so each message must
+     * have its own ciphertext within a conversation (true for encrypt(), which uses a fresh IV).
+     * Runs in the caller's transaction; @PrePersist defaults are NOT applied, so sentAt,
+     * conversationKey, etc. must already be set.
+     */
+    void insertAll(List<CommunicationPortal> messages);
+
+    /**
+     * A user has read a conversation up to (and including) a message id.
+     */
+    record ReadMark(long conversationKey, long userId, long upToMessageId) {
+    }
+
+    /**
+     * Applies many read marks in one JDBC batch. Returns the number of messages each mark
+     * flipped to read, in the same order (0 if the conversation was already read).
+     */
+    int[] markReadUpTo(List<ReadMark> marks, LocalDateTime readAt);
+}
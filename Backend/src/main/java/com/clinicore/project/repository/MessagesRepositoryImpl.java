@@ -0,0 +1,128 @@
+package com.clinicore.project.repository;
+
+import com.clinicore.project.entity.CommunicationPortal;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Spring Data picks this up as the implementation of MessagesRepositoryCustom
+class MessagesRepositoryImpl implements MessagesRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO communication_portal " +
+            "(sender_id, sender_role, recipient_id, recipient_role, message, message_type, " +
+            "conversation_key, sent_at, is_read) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM communication_portal";
+
+    private static final String SELECT_BACK_SQL = "SELECT id, conversation_key, message FROM communication_portal " +
+            "WHERE id > ? AND conversation_key IN (:keys)";
+
+    private static final int SELECT_BACK_CHUNK = 1000;
+
+    // range on idx_conv_key_recipient_read, so each statement only locks that reader's unread rows
+    private static final String MARK_READ_SQL = "UPDATE communication_portal SET is_read = true, read_at = ? " +
+            "WHERE conversation_key = ? AND recipient_id = ? AND is_read = false AND id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    MessagesRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<CommunicationPortal> messages) {
+        if (messages.isEmpty()) return;
+
+        // each row's ciphertext has its own IV, so (conversation, ciphertext) tells the rows apart when reading them back
+        Map<String, CommunicationPortal> byMarker = new HashMap<>();
+        for (CommunicationPortal m : messages) {
+            if (byMarker.put(marker(m.getConversationKey(), m.getMessage()), m) != null) {
+                throw new IllegalArgumentException("insertAll needs a distinct message per conversation");
+            }
+        }
+
+        // ids are handed out after this, so everything we insert sorts above it
+        Long highWater = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CommunicationPortal m = messages.get(i);
+                ps.setLong(1, m.getSenderId());
+                ps.setString(2, m.getSenderRole() != null ? m.getSenderRole().name() : null);
+                ps.setLong(3, m.getRecipientId());
+                ps.setString(4, m.getRecipientRole() != null ? m.getRecipientRole().name() : null);
+                ps.setString(5, m.getMessage());
+                ps.setString(6, m.getMessageType().name());
+                ps.setLong(7, m.getConversationKey());
+                ps.setTimestamp(8, Timestamp.valueOf(m.getSentAt()));
+                ps.setBoolean(9, Boolean.TRUE.equals(m.getIsRead()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+
+        // generated keys of a rewritten multi-row INSERT are first id + n by arithmetic in the driver, which
+        // isn't guaranteed under interleaved auto-increment — read the real ids back instead (PK range scan)
+        int found = 0;
+        for (int from = 0; from < messages.size(); from += SELECT_BACK_CHUNK) {
+            List<CommunicationPortal> chunk = messages.subList(from, Math.min(from + SELECT_BACK_CHUNK, messages.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(highWater);
+            chunk.forEach(m -> args.add(m.getConversationKey()));
+
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    SELECT_BACK_SQL.replace(":keys", placeholders), args.toArray());
+            for (Map<String, Object> row : rows) {
+                CommunicationPortal m = byMarker.get(marker(((Number) row.get("conversation_key")).longValue(),
+                        (String) row.get("message")));
+                if (m != null && m.getId() == null) {
+                    m.setId(((Number) row.get("id")).longValue());
+                    found++;
+                }
+            }
+        }
+        if (found != messages.size()) {
+            throw new IllegalStateException("Inserted " + messages.size() + " messages but found " + found + " of them");
+        }
+    }
+
+    private static String marker(Long conversationKey, String message) {
+        return conversationKey + ":" + message;
+    }
+
+    @Override
+    public int[] markReadUpTo(List<ReadMark> marks, LocalDateTime readAt) {
+        if (marks.isEmpty()) return new int[0];
+
+        Timestamp readTimestamp = Timestamp.valueOf(readAt);
+        return jdbcTemplate.batchUpdate(MARK_READ_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ReadMark mark = marks.get(i);
+                ps.setTimestamp(1, readTimestamp);
+                ps.setLong(2, mark.conversationKey());
+                ps.setLong(3, mark.userId());
+                ps.setLong(4, mark.upToMessageId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return marks.size();
+            }
+        });
+    }
+}
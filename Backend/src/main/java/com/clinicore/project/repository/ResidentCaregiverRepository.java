@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -43,4 +44,15 @@ public interface ResidentCaregiverRepository extends JpaRepository<ResidentCareg
            "WHERE r.id = :residentId")
     List<ResidentCaregiver> findByResidentIdWithProfiles(@Param("residentId") Long residentId);
 
+    /**
+     * Same as findAllWithProfiles but for a batch of residents.
+     */
+    @Query("SELECT rc FROM ResidentCaregiver rc " +
+           "JOIN FETCH rc.resident r " +
+           "JOIN FETCH r.userProfile " +
+           "JOIN FETCH rc.caregiver c " +
+           "JOIN FETCH c.userProfile " +
+           "WHERE r.id IN :residentIds")
+    List<ResidentCaregiver> findByResidentIdsWithProfiles(@Param("residentIds") Collection<Long> residentIds);
+
 }
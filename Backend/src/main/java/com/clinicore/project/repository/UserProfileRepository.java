@@ -1,7 +1,11 @@
 package com.clinicore.project.repository;
 
+import com.clinicore.project.entity.Capability;
 import com.clinicore.project.entity.UserProfile;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -20,6 +24,33 @@ public interface UserProfileRepository extends JpaRepository<UserProfile, Long>
      * Used for filtering users by role (ADMIN, CAREGIVER, RESIDENT)
      */
     List<UserProfile> findByRole(UserProfile.Role role);
+
+    /**
+     * Keyset page of users with a role: ids after afterId, in id order
+     * Used to walk all residents a page at a time (idx_user_profile_role carries the id)
+     */
+    List<UserProfile> findByRoleAndIdGreaterThanOrderByIdAsc(UserProfile.Role role, Long afterId, Limit limit);
+
+    /**
+     * Keyset page of residents matching the resident query filters; a null filter matches everyone
+     * caregiverId: assigned to that caregiver, mobilityStatus: capability row with that status,
+     * dnrPolst: true = DNR/POLST on file ("Yes"), false = anything else
+     */
+    @Query("SELECT u FROM UserProfile u " +
+           "WHERE u.role = com.clinicore.project.entity.UserProfile.Role.RESIDENT AND u.id > :afterId " +
+           "AND (:caregiverId IS NULL OR EXISTS (SELECT rc FROM ResidentCaregiver rc " +
+           "     WHERE rc.id.residentId = u.id AND rc.id.caregiverId = :caregiverId)) " +
+           "AND (:mobilityStatus IS NULL OR EXISTS (SELECT c FROM Capability c " +
+           "     WHERE c.residentId = u.id AND c.mobilityStatus = :mobilityStatus)) " +
+           "AND (:dnrPolst IS NULL " +
+           "     OR (:dnrPolst = TRUE AND EXISTS (SELECT s FROM MedicalServices s WHERE s.residentId = u.id AND UPPER(s.dnrPolst) = 'YES')) " +
+           "     OR (:dnrPolst = FALSE AND NOT EXISTS (SELECT s FROM MedicalServices s WHERE s.residentId = u.id AND UPPER(s.dnrPolst) = 'YES'))) " +
+           "ORDER BY u.id")
+    List<UserProfile> findResidentsMatching(@Param("afterId") Long afterId,
+                                            @Param("caregiverId") Long caregiverId,
+                                            @Param("mobilityStatus") Capability.MobilityStatus mobilityStatus,
+                                            @Param("dnrPolst") Boolean dnrPolst,
+                                            Limit limit);
     
     /**
      * Count users with a specific role
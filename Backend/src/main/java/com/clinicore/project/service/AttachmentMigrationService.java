@@ -0,0 +1,128 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.repository.DocumentsRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Background job that moves legacy inline attachments (communication_portal.attachment_data) and
+ * document blobs (documents.document) into the AttachmentStore, where identical content is kept once.
+ * Each row is its own short transaction so live traffic isn't blocked, and a row is only cleared
+ * after its file is safely stored — a crash mid-run just redoes that row.
+ */
+@Service
+public class AttachmentMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentMigrationService.class);
+
+    private final MessagesRepository messagesRepository;
+    private final DocumentsRepository documentsRepository;
+    private final DocumentService documentService;
+    private final AttachmentStore attachmentStore;
+    private final AttachmentReferenceService attachmentReferenceService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    // highest id handled so far — rows below it were migrated or had no blob
+    private long lastId = 0;
+    private boolean finished = false;
+    private long lastDocumentId = 0;
+    private boolean documentsFinished = false;
+
+    public AttachmentMigrationService(MessagesRepository messagesRepository,
+                                      DocumentsRepository documentsRepository,
+                                      DocumentService documentService,
+                                      AttachmentStore attachmentStore,
+                                      AttachmentReferenceService attachmentReferenceService,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${attachments.migration.enabled:true}") boolean enabled,
+                                      @Value("${attachments.migration.batch-size:20}") int batchSize) {
+        this.messagesRepository = messagesRepository;
+        this.documentsRepository = documentsRepository;
+        this.documentService = documentService;
+        this.attachmentStore = attachmentStore;
+        this.attachmentReferenceService = attachmentReferenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${attachments.migration.interval-ms:60000}",
+               fixedDelayString = "${attachments.migration.interval-ms:60000}")
+    public void migrateBatch() {
+        if (!enabled) return;
+        if (!finished) migrateMessages();
+        if (!documentsFinished) migrateDocuments();
+    }
+
+    private void migrateMessages() {
+        List<Long> ids = messagesRepository.findLegacyAttachmentIds(lastId, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            finished = true;
+            log.info("Attachment migration complete");
+            return;
+        }
+
+        int moved = 0;
+        for (Long id : ids) {
+            try {
+                Boolean done = transactionTemplate.execute(status -> migrateRow(id));
+                if (Boolean.TRUE.equals(done)) moved++;
+            } catch (Exception e) {
+                // leave the blob in place; it's still served from the DB and retried on next startup
+                log.warn("Failed to migrate attachment for message {}: {}", id, e.getMessage());
+            }
+            lastId = id;
+        }
+        log.info("Migrated {} of {} legacy attachments (up to message id {})", moved, ids.size(), lastId);
+    }
+
+    private boolean migrateRow(Long id) {
+        byte[] data = messagesRepository.findAttachmentDataById(id);
+        if (data == null) return false;
+        try {
+            AttachmentStore.StoredAttachment stored = attachmentStore.store(new ByteArrayInputStream(data));
+            attachmentReferenceService.acquire(stored);
+            if (messagesRepository.moveAttachmentToStore(id, stored.key(), stored.size()) == 0) {
+                // moved or deleted meanwhile — give the reference back so the sweep can collect the file
+                attachmentReferenceService.release(stored.key());
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write attachment to store", e);
+        }
+    }
+
+    private void migrateDocuments() {
+        List<Long> ids = documentsRepository.findInlineDocumentIds(lastDocumentId, batchSize);
+        if (ids.isEmpty()) {
+            documentsFinished = true;
+            log.info("Document migration complete");
+            return;
+        }
+
+        int moved = 0;
+        for (Long id : ids) {
+            try {
+                if (documentService.moveDocumentToStore(id)) moved++;
+            } catch (Exception e) {
+                // still inline and readable; retried on next startup
+                log.warn("Failed to migrate document {}: {}", id, e.getMessage());
+            }
+            lastDocumentId = id;
+        }
+        log.info("Migrated {} of {} inline documents (up to document id {})", moved, ids.size(), lastDocumentId);
+    }
+}
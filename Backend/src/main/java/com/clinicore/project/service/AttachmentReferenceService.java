@@ -0,0 +1,194 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.JobCheckpoint;
+import com.clinicore.project.repository.AttachmentBlobRepository;
+import com.clinicore.project.repository.JobCheckpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reference counts for AttachmentStore files, so content shared by several messages or documents
+ * is stored once and only deleted when the last row pointing at it is gone.
+ *
+ * acquire/release join the caller's transaction, so a count only moves if the row that holds the
+ * key commits. The file itself is written before that transaction ends, so if it rolls back, acquire
+ * records the key with no references in a transaction of its own; otherwise nothing would ever point
+ * the sweep at it. Callers acquire straight after AttachmentStore.store and release if their row
+ * update then loses a race, so every stored file ends up counted. Files aren't deleted on release: a scheduled sweep removes files that have had no
+ * references for the grace period, locking the count row first so an upload of the same content
+ * either waits for the sweep or keeps the file.
+ *
+ * Dedup is reported as attachments.dedup.ratio (references per stored file) and
+ * attachments.dedup.saved.bytes, refreshed by the sweep.
+ */
+@Service
+public class AttachmentReferenceService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentReferenceService.class);
+
+    private static final String BACKFILL_CHECKPOINT = "attachment_blob_backfill";
+
+    private final AttachmentBlobRepository attachmentBlobRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final AttachmentStore attachmentStore;
+    private final TransactionTemplate transactionTemplate;
+    // for recording rolled-back files, after the caller's transaction is over
+    private final TransactionTemplate newTransaction;
+    private final boolean sweepEnabled;
+    private final int graceHours;
+    private final int sweepBatchSize;
+
+    // last computed stats, read by the gauges
+    private volatile double dedupRatio = 1.0;
+    private volatile long savedBytes = 0;
+
+    public AttachmentReferenceService(AttachmentBlobRepository attachmentBlobRepository,
+                                      JobCheckpointRepository jobCheckpointRepository,
+                                      AttachmentStore attachmentStore,
+                                      TransactionTemplate transactionTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${attachments.gc.enabled:true}") boolean sweepEnabled,
+                                      @Value("${attachments.gc.grace-hours:24}") int graceHours,
+                                      @Value("${attachments.gc.batch-size:100}") int sweepBatchSize) {
+        this.attachmentBlobRepository = attachmentBlobRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.attachmentStore = attachmentStore;
+        this.transactionTemplate = transactionTemplate;
+        this.newTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sweepEnabled = sweepEnabled;
+        this.graceHours = graceHours;
+        this.sweepBatchSize = sweepBatchSize;
+
+        Gauge.builder("attachments.dedup.ratio", this, s -> s.dedupRatio)
+                .description("References per stored attachment file (1.0 = no duplicates)")
+                .register(meterRegistry);
+        Gauge.builder("attachments.dedup.saved.bytes", this, s -> s.savedBytes)
+                .description("Bytes not stored thanks to deduplication")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records one more row pointing at a stored file. Call in the transaction that saves that row,
+     * right after AttachmentStore.store — if that transaction doesn't commit, the file is recorded as
+     * unreferenced instead.
+     */
+    @Transactional
+    public void acquire(AttachmentStore.StoredAttachment stored) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    recordUnreferenced(stored);
+                }
+            }
+        });
+        attachmentBlobRepository.acquire(stored.key(), stored.size());
+        // the count row is locked now; if a sweep removed the file just before, fail rather than point at nothing
+        if (!attachmentStore.exists(stored.key())) {
+            throw new IllegalStateException("Attachment content was removed while storing, please retry");
+        }
+    }
+
+    /**
+     * A row pointing at key is going away. The file is left for the sweep.
+     */
+    @Transactional
+    public void release(String key) {
+        if (key == null) return;
+        attachmentBlobRepository.release(key);
+    }
+
+    // runs after a rollback; a failure here only leaves the file behind, so it's logged rather than thrown
+    private void recordUnreferenced(AttachmentStore.StoredAttachment stored) {
+        try {
+            newTransaction.executeWithoutResult(status ->
+                    attachmentBlobRepository.recordUnreferenced(stored.key(), stored.size()));
+        } catch (Exception e) {
+            log.warn("Could not record unreferenced attachment {}: {}", stored.key(), e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${attachments.gc.interval-ms:600000}",
+               fixedDelayString = "${attachments.gc.interval-ms:600000}")
+    public void sweep() {
+        if (sweepEnabled) {
+            List<String> keys = attachmentBlobRepository.findUnreferencedSince(
+                    LocalDateTime.now().minusHours(graceHours), sweepBatchSize);
+            int deleted = 0;
+            for (String key : keys) {
+                try {
+                    Boolean removed = transactionTemplate.execute(status -> deleteIfUnreferenced(key));
+                    if (Boolean.TRUE.equals(removed)) deleted++;
+                } catch (Exception e) {
+                    log.warn("Failed to delete unreferenced attachment {}: {}", key, e.getMessage());
+                }
+            }
+            if (deleted > 0) {
+                log.info("Deleted {} unreferenced attachment files", deleted);
+            }
+        }
+        refreshStats();
+    }
+
+    private boolean deleteIfUnreferenced(String key) {
+        Long refs = attachmentBlobRepository.lockRefCount(key);
+        if (refs == null || refs > 0) return false;
+        try {
+            attachmentStore.delete(key);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        attachmentBlobRepository.deleteById(key);
+        return true;
+    }
+
+    private void refreshStats() {
+        AttachmentBlobRepository.DedupStats stats = attachmentBlobRepository.findDedupStats();
+        long files = stats.getFiles() != null ? stats.getFiles() : 0;
+        long refs = stats.getRefs() != null ? stats.getRefs() : 0;
+        dedupRatio = files == 0 ? 1.0 : (double) refs / files;
+        long logical = stats.getLogicalBytes() != null ? stats.getLogicalBytes() : 0;
+        long stored = stats.getStoredBytes() != null ? stats.getStoredBytes() : 0;
+        savedBytes = Math.max(0, logical - stored);
+    }
+
+    /**
+     * Builds the counts from every row that holds a store key, once per database. Runs while the
+     * context starts — before the server takes requests and before the scheduled jobs (migration,
+     * thumbnails, sweep) — so no acquire() can land first and leave shared files under-counted.
+     * Completion is recorded in job_checkpoint, so normal restarts cost one primary-key lookup.
+     */
+    @PostConstruct
+    public void backfillReferenceCounts() {
+        JobCheckpoint done = jobCheckpointRepository.findById(BACKFILL_CHECKPOINT).orElse(null);
+        if (done != null && Boolean.TRUE.equals(done.getCompleted())) return;
+
+        Integer rows = transactionTemplate.execute(status -> {
+            // counts from an earlier partial run (or from acquires before this existed) are replaced, not added to;
+            // files nothing references any more drop to zero and go through the sweep's grace period
+            attachmentBlobRepository.resetRefCounts();
+            int counted = attachmentBlobRepository.backfillFromReferences();
+            LocalDateTime now = LocalDateTime.now();
+            jobCheckpointRepository.save(new JobCheckpoint(BACKFILL_CHECKPOINT, 0L, true, now, now));
+            return counted;
+        });
+        log.info("Backfilled reference counts for {} attachment files", rows);
+    }
+}
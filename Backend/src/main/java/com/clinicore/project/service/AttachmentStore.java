@@ -0,0 +1,30 @@
+package com.clinicore.project.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content-addressed storage for message attachments and documents, keyed by SHA-256 of the content.
+ * Same bytes always map to the same key, so storing a duplicate is a no-op.
+ */
+public interface AttachmentStore {
+
+    // streams content into the store without buffering it in memory
+    StoredAttachment store(InputStream content) throws IOException;
+
+    // null if nothing is stored under that key
+    Resource load(String key) throws IOException;
+
+    boolean exists(String key);
+
+    void delete(String key) throws IOException;
+
+    // backfill: encrypts up to limit entries stored before encryption at rest; returns how many it did,
+    // fewer than limit once none are left. Resumes where the previous call stopped, also across restarts
+    int encryptPlaintextEntries(int limit) throws IOException;
+
+    record StoredAttachment(String key, long size) {
+    }
+}
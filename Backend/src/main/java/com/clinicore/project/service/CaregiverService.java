@@ -17,15 +17,18 @@ public class CaregiverService {
     private final UserProfileRepository userProfileRepository;
     private final ResidentCaregiverRepository residentCaregiverRepository;
     private final ResidentGeneralRepository residentGeneralRepository;
+    private final ResidentChangeTracker residentChangeTracker;
 
     public CaregiverService(CaregiverRepository caregiverRepository,
                             UserProfileRepository userProfileRepository,
                             ResidentCaregiverRepository residentCaregiverRepository,
-                            ResidentGeneralRepository residentGeneralRepository) {
+                            ResidentGeneralRepository residentGeneralRepository,
+                            ResidentChangeTracker residentChangeTracker) {
         this.caregiverRepository = caregiverRepository;
         this.userProfileRepository = userProfileRepository;
         this.residentCaregiverRepository = residentCaregiverRepository;
         this.residentGeneralRepository = residentGeneralRepository;
+        this.residentChangeTracker = residentChangeTracker;
     }
 
     // grab all caregivers + who they're assigned to, admins only
@@ -125,6 +128,7 @@ public class CaregiverService {
 
         ResidentCaregiver assignment = new ResidentCaregiver(id, resident, caregiver, LocalDateTime.now());
         residentCaregiverRepository.save(assignment);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     // remove a resident from a caregiver
@@ -143,6 +147,7 @@ public class CaregiverService {
         }
 
         residentCaregiverRepository.deleteById(id);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     // switch a resident from one caregiver to another
@@ -178,6 +183,7 @@ public class CaregiverService {
             ResidentCaregiver newAssignment = new ResidentCaregiver(newId, resident, toCaregiver, LocalDateTime.now());
             residentCaregiverRepository.save(newAssignment);
         }
+        residentChangeTracker.residentChanged(residentId);
     }
 
     // returns residents split into assigned/others for a caregiver's resident tab
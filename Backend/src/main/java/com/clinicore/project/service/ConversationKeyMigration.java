@@ -0,0 +1,128 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.repository.MessagesRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One-time move from the old string conversation_id ("smaller_larger") to the numeric conversation_key.
+ *
+ * Hibernate adds the new column and indexes; this fills the key for rows written before it existed
+ * (in batches, so each UPDATE stays short), checks that no row is left without one, and only then
+ * drops the old column together with its indexes and makes conversation_key NOT NULL.
+ * It runs while the context starts, before the app takes traffic, because the old column is
+ * NOT NULL on conversation_summary and message_change and new inserts no longer set it — so any
+ * failure, including rows whose key can't be derived, stops startup instead of being logged.
+ * Once that's done every start is two information_schema lookups per table.
+ */
+@Service
+public class ConversationKeyMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationKeyMigration.class);
+
+    private static final String LEGACY_COLUMN = "conversation_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    // MessagesRepository is only here so the JPA schema update has run before we look at the tables
+    public ConversationKeyMigration(JdbcTemplate jdbcTemplate,
+                                    MessagesRepository messagesRepository,
+                                    @Value("${conversation.key-migration.enabled:true}") boolean enabled,
+                                    @Value("${conversation.key-migration.batch-size:10000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!enabled) return;
+
+        // messages and summaries know both participants; the change feed only has the old string
+        migrateTable("communication_portal",
+                "(LEAST(sender_id, recipient_id) << 32) | GREATEST(sender_id, recipient_id)",
+                "sender_id IS NOT NULL AND recipient_id IS NOT NULL");
+        migrateTable("conversation_summary",
+                "(LEAST(user_id, other_user_id) << 32) | GREATEST(user_id, other_user_id)",
+                "other_user_id IS NOT NULL");
+        migrateTable("message_change",
+                "(CAST(SUBSTRING_INDEX(conversation_id, '_', 1) AS UNSIGNED) << 32) " +
+                        "| CAST(SUBSTRING_INDEX(conversation_id, '_', -1) AS UNSIGNED)",
+                "conversation_id LIKE '%\\_%'");
+    }
+
+    // no try/catch: a failure fails startup, rather than serving traffic on a half-migrated table
+    private void migrateTable(String table, String keyExpression, String condition) {
+        if (hasLegacyColumn(table)) {
+            String sql = "UPDATE " + table + " SET conversation_key = " + keyExpression +
+                    " WHERE conversation_key IS NULL AND " + condition + " LIMIT ?";
+            long total = 0;
+            int updated;
+            do {
+                updated = jdbcTemplate.update(sql, batchSize);
+                total += updated;
+            } while (updated == batchSize);
+
+            // dropping the old column is irreversible — only once every row has its key
+            long missing = countMissingKeys(table);
+            if (missing > 0) {
+                throw new IllegalStateException(table + " has " + missing + " rows without a conversation_key " +
+                        "that couldn't be derived; fix them before " + LEGACY_COLUMN + " can be dropped");
+            }
+
+            List<String> legacyIndexes = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT index_name FROM information_schema.statistics " +
+                            "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?",
+                    String.class, table, LEGACY_COLUMN);
+            String dropIndexes = legacyIndexes.stream()
+                    .map(name -> "DROP INDEX `" + name + "`, ")
+                    .collect(Collectors.joining());
+            jdbcTemplate.execute("ALTER TABLE " + table + " " + dropIndexes + "DROP COLUMN " + LEGACY_COLUMN);
+
+            log.info("Moved {} to conversation_key: filled {} rows, dropped {} and indexes {}",
+                    table, total, LEGACY_COLUMN, legacyIndexes);
+        }
+
+        // the entities map the key as nullable so Hibernate adds it as NULL (a NOT NULL add would fill
+        // existing rows with 0 and hide them from the backfill above); tighten it once every row has one
+        if (isKeyNullable(table)) {
+            long missing = countMissingKeys(table);
+            if (missing > 0) {
+                throw new IllegalStateException(table + " has " + missing + " rows without a conversation_key");
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY conversation_key BIGINT NOT NULL");
+            log.info("Made {}.conversation_key NOT NULL", table);
+        }
+    }
+
+    private long countMissingKeys(String table) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE conversation_key IS NULL", Long.class);
+        return count != null ? count : 0;
+    }
+
+    private boolean isKeyNullable(String table) {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT is_nullable FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'conversation_key'",
+                String.class, table);
+        return !nullable.isEmpty() && "YES".equals(nullable.getFirst());
+    }
+
+    private boolean hasLegacyColumn(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?",
+                Integer.class, table, LEGACY_COLUMN);
+        return count != null && count > 0;
+    }
+}
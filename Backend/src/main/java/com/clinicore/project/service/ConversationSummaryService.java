@@ -0,0 +1,69 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.repository.ConversationSummaryRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Maintains conversation_summary, the per-user inbox table.
+ * Writes join the caller's transaction so the summary commits (or rolls back) with the message itself.
+ */
+@Service
+public class ConversationSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationSummaryService.class);
+
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final MessagesRepository messagesRepository;
+
+    public ConversationSummaryService(ConversationSummaryRepository conversationSummaryRepository,
+                                      MessagesRepository messagesRepository) {
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.messagesRepository = messagesRepository;
+    }
+
+    // message must already be saved (needs id, sentAt and conversationKey)
+    @Transactional
+    public void recordMessage(CommunicationPortal message) {
+        String type = message.getMessageType() != null ? message.getMessageType().name() : null;
+
+        // sender's row: preview moves, unread stays
+        conversationSummaryRepository.upsertForMessage(
+                message.getSenderId(), message.getConversationKey(), message.getRecipientId(),
+                message.getId(), message.getSenderId(), message.getMessage(), type, message.getSentAt(), 0);
+
+        // recipient's row: preview moves, one more unread
+        conversationSummaryRepository.upsertForMessage(
+                message.getRecipientId(), message.getConversationKey(), message.getSenderId(),
+                message.getId(), message.getSenderId(), message.getMessage(), type, message.getSentAt(), 1);
+    }
+
+    // batched recordMessage for messages inserted together (broadcasts)
+    @Transactional
+    public void recordMessages(List<CommunicationPortal> messages) {
+        conversationSummaryRepository.upsertAllForMessages(messages);
+    }
+
+    /**
+     * Builds the summary table from existing messages the first time the app starts with it.
+     * Skipped once the table has rows, so normal restarts cost one COUNT.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (conversationSummaryRepository.count() > 0 || messagesRepository.count() == 0) {
+            return;
+        }
+        int rows = conversationSummaryRepository.backfillFromMessages();
+        conversationSummaryRepository.backfillUnreadCounts();
+        log.info("Backfilled {} conversation_summary rows from communication_portal", rows);
+    }
+}
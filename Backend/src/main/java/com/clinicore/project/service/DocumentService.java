@@ -2,10 +2,15 @@ package com.clinicore.project.service;
 
 import com.clinicore.project.entity.*;
 import com.clinicore.project.repository.*;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.Base64;
 
@@ -15,15 +20,28 @@ public class DocumentService {
     private final DocumentsRepository documentsRepository;
     private final UserProfileRepository userProfileRepository;
     private final ResidentCaregiverRepository residentCaregiverRepository;
+    private final EncryptionService encryptionService;
+    private final HashService_SHA256 hashService;
+    private final AttachmentStore attachmentStore;
+    private final AttachmentReferenceService attachmentReferenceService;
 
     public DocumentService(DocumentsRepository documentsRepository,
                            UserProfileRepository userProfileRepository,
-                           ResidentCaregiverRepository residentCaregiverRepository) {
+                           ResidentCaregiverRepository residentCaregiverRepository,
+                           EncryptionService encryptionService,
+                           HashService_SHA256 hashService,
+                           AttachmentStore attachmentStore,
+                           AttachmentReferenceService attachmentReferenceService) {
         this.documentsRepository = documentsRepository;
         this.userProfileRepository = userProfileRepository;
         this.residentCaregiverRepository = residentCaregiverRepository;
+        this.encryptionService = encryptionService;
+        this.hashService = hashService;
+        this.attachmentStore = attachmentStore;
+        this.attachmentReferenceService = attachmentReferenceService;
     }
 
+    @Transactional
     public Map<String, Object> uploadDocument(Long currentUserId,
                                               Long residentId,
                                               String title,
@@ -49,7 +67,15 @@ public class DocumentService {
         document.setResidentId(residentId);
         document.setTitle(title);
         document.setType(type);
-        document.setDocument(file.getBytes());
+        // content goes to the shared store under its SHA-256 — the same file uploaded for several
+        // residents (or sent in chat) is kept once; the row only holds the hash
+        AttachmentStore.StoredAttachment stored;
+        try (InputStream in = file.getInputStream()) {
+            stored = attachmentStore.store(in);
+        }
+        // counted before anything else can fail, so a rollback still leaves the file to the sweep
+        attachmentReferenceService.acquire(stored);
+        document.setContentHash(stored.key());
         documentsRepository.save(document);
 
         return Map.of(
@@ -86,7 +112,7 @@ public class DocumentService {
 
     // Get Single Document (by ID)
     @Transactional(readOnly = true)
-    public Map<String, Object> getDocumentById(Long userId, Long documentId) {
+    public Map<String, Object> getDocumentById(Long userId, Long documentId) throws IOException {
         UserProfile currentUser = userProfileRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
 
@@ -105,7 +131,7 @@ public class DocumentService {
         map.put("type", document.getType());
         map.put("residentId", document.getResidentId());
         map.put("uploaded_at", document.getUploaded_at());
-        map.put("content", Base64.getEncoder().encodeToString(document.getDocument()));
+        map.put("content", Base64.getEncoder().encodeToString(readContent(document)));
         return map;
     }
 
@@ -145,12 +171,13 @@ public class DocumentService {
         return result;
     }
 
+    // access check for /file — reads only metadata and the content hash, never the blob
     @Transactional(readOnly = true)
-    public Document getDocumentWithFile(Long documentId, Long userId) {
+    public DocumentsRepository.DocumentFileInfo getDocumentFileInfo(Long documentId, Long userId) {
         UserProfile currentUser = userProfileRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        Document document = documentsRepository.findById(documentId)
+        DocumentsRepository.DocumentFileInfo document = documentsRepository.findFileInfoById(documentId)
                 .orElseThrow(() -> new IllegalArgumentException("Document not found"));
 
         if (currentUser.getRole() == UserProfile.Role.RESIDENT &&
@@ -165,6 +192,93 @@ public class DocumentService {
         return document;
     }
 
+    // plaintext file content; call after getDocumentFileInfo has checked access
+    @Transactional(readOnly = true)
+    public byte[] getDocumentContent(DocumentsRepository.DocumentFileInfo document) throws IOException {
+        if (!Boolean.TRUE.equals(document.getInline())) {
+            return loadFromStore(document.getContentHash());
+        }
+        return decryptIfNeeded(documentsRepository.findContentById(document.getId()));
+    }
+
+    // plaintext bytes of a document — from the store, or the inline blob for rows not yet moved
+    // (rows from before encryption at rest are returned as stored)
+    public byte[] readContent(Document document) throws IOException {
+        if (document.getDocument() == null) {
+            return loadFromStore(document.getContentHash());
+        }
+        return decryptIfNeeded(document.getDocument());
+    }
+
+    private byte[] loadFromStore(String key) throws IOException {
+        Resource resource = key != null ? attachmentStore.load(key) : null;
+        if (resource == null) {
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] decryptIfNeeded(byte[] stored) throws IOException {
+        if (stored == null || !EncryptionService.isStreamEncrypted(stored)) {
+            return stored;
+        }
+        try (InputStream in = encryptionService.decryptingInputStream(new ByteArrayInputStream(stored))) {
+            return in.readAllBytes();
+        }
+    }
+
+    // backfill: encrypts one legacy plaintext document in place; false if it was already encrypted.
+    // Encrypted rows from before content hashing only get their content_hash filled in (so /file has an ETag).
+    // Both writes are conditional updates rather than save(), so they can't put bytes back into a row
+    // that moveDocumentToStore emptied in the meantime
+    @Transactional
+    public boolean encryptStoredDocument(Long documentId) throws IOException {
+        Document document = documentsRepository.findById(documentId).orElse(null);
+        if (document == null || document.getDocument() == null) {
+            return false;
+        }
+        if (EncryptionService.isStreamEncrypted(document.getDocument())) {
+            if (document.getContentHash() == null) {
+                documentsRepository.setContentHashIfMissing(documentId,
+                        hashService.hashBytes(decryptIfNeeded(document.getDocument())));
+            }
+            return false;
+        }
+        byte[] plain = document.getDocument();
+        byte[] ciphertext = encrypt(new ByteArrayInputStream(plain), plain.length);
+        return documentsRepository.replaceInlineContent(documentId, ciphertext, hashService.hashBytes(plain)) > 0;
+    }
+
+    // migration: moves one inline blob into the store (encrypted there) and clears the column; false if already moved
+    @Transactional
+    public boolean moveDocumentToStore(Long documentId) throws IOException {
+        Document document = documentsRepository.findById(documentId).orElse(null);
+        if (document == null || document.getDocument() == null) {
+            return false;
+        }
+        AttachmentStore.StoredAttachment stored = attachmentStore.store(new ByteArrayInputStream(readContent(document)));
+        attachmentReferenceService.acquire(stored);
+        if (documentsRepository.moveInlineToStore(documentId, stored.key()) == 0) {
+            // row was deleted or moved meanwhile — give the reference back so the sweep can collect the file
+            attachmentReferenceService.release(stored.key());
+            return false;
+        }
+        return true;
+    }
+
+    // the column is a JPA byte[], so the ciphertext is built in memory — sized up front to avoid regrowth
+    private byte[] encrypt(InputStream content, long size) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                (int) Math.min(Integer.MAX_VALUE - 8, Math.max(size, 0) + EncryptionService.STREAM_HEADER_LENGTH + 1024));
+        try (OutputStream out = encryptionService.encryptingOutputStream(buffer)) {
+            content.transferTo(out);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Transactional
     public void deleteDocument(Long documentId, Long userId) {
         UserProfile currentUser = userProfileRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -173,9 +287,24 @@ public class DocumentService {
             throw new IllegalArgumentException("Only administrators can delete documents");
         }
 
-        Document document = documentsRepository.findById(documentId)
+        Document document = documentsRepository.findByIdForUpdate(documentId)
                 .orElseThrow(() -> new IllegalArgumentException("Document not found"));
 
         documentsRepository.delete(document);
+        // the file itself may be shared; the sweep removes it once nothing references it
+        if (document.getDocument() == null) {
+            attachmentReferenceService.release(document.getContentHash());
+        }
+    }
+
+    // discharge: removes every document of a resident, releasing stored files the same way deleteDocument does
+    @Transactional
+    public int deleteDocumentsForResident(Long residentId) {
+        List<String> storedKeys = documentsRepository.lockStoredContentHashesByResidentId(residentId);
+        int deleted = documentsRepository.deleteByResidentId(residentId);
+        for (String key : storedKeys) {
+            attachmentReferenceService.release(key);
+        }
+        return deleted;
     }
-}
\ No newline at end of file
+}
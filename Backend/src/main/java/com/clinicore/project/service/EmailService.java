@@ -1,8 +1,12 @@
 package com.clinicore.project.service;
 
+import java.util.Map;
+
 public interface EmailService {
     void sendActivationCode(String toEmail, String activationCode);
     void sendAccountCreatedConfirmation(String toEmail, String fullName, String username, String role);
     void sendUsernameReminder(String toEmail, String username);
     void sendPasswordResetLink(String toEmail, String resetLink);
+    // unreadBySender: sender display name → unread messages from them
+    void sendUnreadMessagesDigest(String toEmail, String firstName, int totalUnread, Map<String, Integer> unreadBySender);
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.repository.DocumentsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Background job that encrypts content stored before encryption at rest — document blobs and
+ * attachment store files — and fills in the content hash of documents encrypted before hashing
+ * existed. Works in small batches; each document is its own transaction and each file is swapped
+ * in atomically, so readers keep working (legacy plaintext is still served) mid-run.
+ */
+@Service
+public class EncryptionBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(EncryptionBackfillService.class);
+
+    private final DocumentsRepository documentsRepository;
+    private final DocumentService documentService;
+    private final AttachmentStore attachmentStore;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private long lastDocumentId = 0;
+    private boolean documentsFinished = false;
+    private boolean attachmentsFinished = false;
+
+    public EncryptionBackfillService(DocumentsRepository documentsRepository,
+                                     DocumentService documentService,
+                                     AttachmentStore attachmentStore,
+                                     @Value("${encryption.backfill.enabled:true}") boolean enabled,
+                                     @Value("${encryption.backfill.batch-size:20}") int batchSize) {
+        this.documentsRepository = documentsRepository;
+        this.documentService = documentService;
+        this.attachmentStore = attachmentStore;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${encryption.backfill.interval-ms:60000}",
+               fixedDelayString = "${encryption.backfill.interval-ms:60000}")
+    public void encryptBatch() {
+        if (!enabled) return;
+        if (!documentsFinished) encryptDocuments();
+        if (!attachmentsFinished) encryptAttachments();
+    }
+
+    private void encryptDocuments() {
+        List<Long> ids = documentsRepository.findDocumentIdsToBackfill(lastDocumentId, batchSize);
+        if (ids.isEmpty()) {
+            documentsFinished = true;
+            log.info("Document encryption backfill complete");
+            return;
+        }
+
+        int encrypted = 0;
+        for (Long id : ids) {
+            try {
+                if (documentService.encryptStoredDocument(id)) encrypted++;
+            } catch (Exception e) {
+                // stays plaintext and readable; picked up again on next startup
+                log.warn("Failed to encrypt document {}: {}", id, e.getMessage());
+            }
+            lastDocumentId = id;
+        }
+        // the rest were already encrypted and only needed their content hash
+        log.info("Encrypted {} of {} backfilled documents (up to document id {})", encrypted, ids.size(), lastDocumentId);
+    }
+
+    private void encryptAttachments() {
+        try {
+            int encrypted = attachmentStore.encryptPlaintextEntries(batchSize);
+            if (encrypted < batchSize) {
+                attachmentsFinished = true;
+                log.info("Attachment encryption backfill complete");
+            }
+            if (encrypted > 0) {
+                log.info("Encrypted {} plaintext attachment files", encrypted);
+            }
+        } catch (IOException e) {
+            log.warn("Attachment encryption backfill failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,17 +1,49 @@
 package com.clinicore.project.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * AES-256-GCM encryption service for message encryption at rest.
  * Each message gets a unique 12-byte IV prepended to the ciphertext.
+ *
+ * Message ciphertext is "$keyId$" + Base64(IV + ciphertext + tag). The key id picks the key from the
+ * keyring, so keys can be rotated without rewriting every row at once: new writes use the active key,
+ * any key in the ring can still decrypt, and KeyRotationService re-encrypts old rows in the background.
+ * Ciphertext without a header (written before key ids existed) belongs to the base key, id "0".
+ * '$' isn't in the Base64 alphabet, so the two forms can't be confused.
+ *
+ * Cipher instances and decode buffers are kept per thread — Cipher.getInstance does a provider
+ * lookup every call, and a Cipher isn't thread-safe, so one per thread is the cheapest safe option.
+ * The plaintext buffer is zeroed after each decrypt and never kept above MAX_REUSED_BUFFER.
+ *
+ * Files (attachments, documents) use a separate streaming format so they never have to be held in memory:
+ *   header  = "CCS1" magic (4 bytes) + random nonce prefix (7 bytes)
+ *   body    = segments of up to 64 KiB plaintext, each sealed with AES-GCM (ciphertext + 16-byte tag)
+ *   segment IV = nonce prefix (7) + segment index (4, big-endian) + last-segment flag (1)
+ * The header is bound to every segment as AAD. The index stops segments being reordered,
+ * and the last flag stops a file being silently truncated at a segment boundary.
+ * Streams are always sealed with the base key.
  */
 @Service
 public class EncryptionService {
@@ -20,33 +52,110 @@ public class EncryptionService {
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 128;
 
+    static final int STREAM_SEGMENT_SIZE = 64 * 1024;
+    private static final byte[] STREAM_MAGIC = {'C', 'C', 'S', '1'};
+    private static final int STREAM_NONCE_PREFIX_LENGTH = 7;
+    public static final int STREAM_HEADER_LENGTH = STREAM_MAGIC.length + STREAM_NONCE_PREFIX_LENGTH;
+    private static final int GCM_TAG_BYTES = GCM_TAG_LENGTH / 8;
+
+    // below this many messages the fork/join hand-off costs more than it saves
+    static final int PARALLEL_THRESHOLD = 128;
+
+    public static final String BASE_KEY_ID = "0";
+    private static final char KEY_ID_DELIMITER = '$';
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+
+    // base key: headerless message ciphertext and file streams
     private final SecretKeySpec secretKey;
+    private final Map<String, SecretKeySpec> keyring;
+    private final String activeKeyId;
+    private final SecretKeySpec activeKey;
+    private final String activePrefix;
     private final SecureRandom secureRandom = new SecureRandom();
 
-    public EncryptionService(@Value("${message.encryption.key}") String base64Key) {
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(EncryptionService::newCipher);
+
+    // per-thread scratch space for Base64-decoded input and decrypted output; grows up to MAX_REUSED_BUFFER,
+    // anything bigger gets a one-off array so a single large message doesn't stay pinned on every thread
+    static final int MAX_REUSED_BUFFER = 64 * 1024;
+    private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[][]{new byte[1024], new byte[1024]});
+
+    public EncryptionService(String base64Key) {
+        this(base64Key, "", BASE_KEY_ID);
+    }
+
+    /**
+     * @param base64Key   the base key (id "0")
+     * @param keyring     extra keys as "id:base64Key,id:base64Key" — empty if there are none
+     * @param activeKeyId key used for new ciphertext; must be "0" or an id in the keyring
+     */
+    @Autowired
+    public EncryptionService(@Value("${message.encryption.key}") String base64Key,
+                             @Value("${message.encryption.keyring:}") String keyring,
+                             @Value("${message.encryption.active-key-id:0}") String activeKeyId) {
+        this.secretKey = toKey(base64Key);
+
+        Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+        keys.put(BASE_KEY_ID, secretKey);
+        if (keyring != null && !keyring.isBlank()) {
+            for (String entry : keyring.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2 || !KEY_ID_PATTERN.matcher(parts[0]).matches()) {
+                    throw new IllegalArgumentException("Keyring entries must look like id:base64Key");
+                }
+                if (keys.putIfAbsent(parts[0], toKey(parts[1])) != null) {
+                    throw new IllegalArgumentException("Duplicate key id in keyring: " + parts[0]);
+                }
+            }
+        }
+        this.keyring = Map.copyOf(keys);
+
+        String active = activeKeyId == null || activeKeyId.isBlank() ? BASE_KEY_ID : activeKeyId.trim();
+        if (!this.keyring.containsKey(active)) {
+            throw new IllegalArgumentException("Active key id " + active + " is not in the keyring");
+        }
+        this.activeKeyId = active;
+        this.activeKey = this.keyring.get(active);
+        this.activePrefix = KEY_ID_DELIMITER + active + KEY_ID_DELIMITER;
+    }
+
+    private static SecretKeySpec toKey(String base64Key) {
         byte[] keyBytes = Base64.getDecoder().decode(base64Key);
         if (keyBytes.length != 32) {
             throw new IllegalArgumentException("Encryption key must be 256 bits (32 bytes), got " + keyBytes.length);
         }
-        this.secretKey = new SecretKeySpec(keyBytes, "AES");
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    // true if the value isn't sealed with the active key yet (includes headerless and plaintext values)
+    public boolean needsReEncryption(String ciphertext) {
+        return ciphertext != null && !ciphertext.isEmpty() && !ciphertext.startsWith(activePrefix);
+    }
+
+    // decrypts with whichever key sealed it and seals again with the active key
+    public String reEncrypt(String ciphertext) {
+        return encrypt(decrypt(ciphertext));
     }
 
     public String encrypt(String plaintext) {
         try {
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            Cipher cipher = ciphers.get();
+
             byte[] iv = new byte[GCM_IV_LENGTH];
             secureRandom.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            // IV goes at the front, ciphertext + tag is written straight after it (no intermediate array)
+            byte[] combined = new byte[GCM_IV_LENGTH + cipher.getOutputSize(input.length)];
+            System.arraycopy(iv, 0, combined, 0, GCM_IV_LENGTH);
+            cipher.doFinal(input, 0, input.length, combined, GCM_IV_LENGTH);
 
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-
-            // prepend IV to ciphertext
-            byte[] combined = new byte[iv.length + ciphertext.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(ciphertext, 0, combined, iv.length, ciphertext.length);
-
-            return Base64.getEncoder().encodeToString(combined);
+            return activePrefix + Base64.getEncoder().encodeToString(combined);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
         }
@@ -54,21 +163,295 @@ public class EncryptionService {
 
     public String decrypt(String encryptedBase64) {
         try {
-            byte[] combined = Base64.getDecoder().decode(encryptedBase64);
+            byte[][] buf = buffers.get();
 
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, GCM_IV_LENGTH);
+            SecretKeySpec key = secretKey;
+            String body = encryptedBase64;
+            if (!encryptedBase64.isEmpty() && encryptedBase64.charAt(0) == KEY_ID_DELIMITER) {
+                int end = encryptedBase64.indexOf(KEY_ID_DELIMITER, 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Malformed key id header");
+                }
+                String keyId = encryptedBase64.substring(1, end);
+                key = keyring.get(keyId);
+                if (key == null) {
+                    throw new IllegalArgumentException("Unknown encryption key id: " + keyId);
+                }
+                body = encryptedBase64.substring(end + 1);
+            }
 
-            byte[] ciphertext = new byte[combined.length - GCM_IV_LENGTH];
-            System.arraycopy(combined, GCM_IV_LENGTH, ciphertext, 0, ciphertext.length);
+            // decode into the reusable buffer instead of allocating combined/iv/ciphertext arrays
+            byte[] encoded = body.getBytes(StandardCharsets.ISO_8859_1);
+            int maxDecoded = encoded.length / 4 * 3 + 3;
+            byte[] combined = scratch(buf, 0, maxDecoded);
+            int combinedLength = Base64.getDecoder().decode(encoded, combined);
+            if (combinedLength < GCM_IV_LENGTH) {
+                throw new IllegalArgumentException("Ciphertext too short");
+            }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, combined, 0, GCM_IV_LENGTH));
 
-            byte[] plaintext = cipher.doFinal(ciphertext);
-            return new String(plaintext, java.nio.charset.StandardCharsets.UTF_8);
+            int ciphertextLength = combinedLength - GCM_IV_LENGTH;
+            int maxPlain = cipher.getOutputSize(ciphertextLength);
+            byte[] plain = scratch(buf, 1, maxPlain);
+            int plainLength = 0;
+            try {
+                plainLength = cipher.doFinal(combined, GCM_IV_LENGTH, ciphertextLength, plain, 0);
+                return new String(plain, 0, plainLength, StandardCharsets.UTF_8);
+            } finally {
+                // don't leave message plaintext sitting in the thread's buffer
+                Arrays.fill(plain, 0, plainLength, (byte) 0);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
         }
     }
+
+    // the thread's buffer at index if it's big enough, grown if the size is under the cap, else a one-off array
+    private static byte[] scratch(byte[][] buf, int index, int size) {
+        if (buf[index].length >= size) {
+            return buf[index];
+        }
+        if (size > MAX_REUSED_BUFFER) {
+            return new byte[size];
+        }
+        buf[index] = new byte[size];
+        return buf[index];
+    }
+
+    /**
+     * Decrypts a batch, keeping order. null and empty entries are passed through unchanged.
+     * Large batches are split across the common fork/join pool; each worker uses its own cipher.
+     * Throws if any entry fails to decrypt, same as decrypt().
+     */
+    public List<String> decryptAll(List<String> encryptedBase64) {
+        if (encryptedBase64 == null || encryptedBase64.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (encryptedBase64.size() < PARALLEL_THRESHOLD) {
+            List<String> result = new ArrayList<>(encryptedBase64.size());
+            for (String value : encryptedBase64) {
+                result.add(decryptOrPassThrough(value));
+            }
+            return result;
+        }
+        return new ArrayList<>(encryptedBase64.parallelStream()
+                .map(this::decryptOrPassThrough)
+                .toList());
+    }
+
+    /**
+     * Encrypts a batch, keeping order — each entry gets its own IV, even if the plaintexts repeat.
+     * Large batches are split across the common fork/join pool like decryptAll.
+     */
+    public List<String> encryptAll(List<String> plaintexts) {
+        if (plaintexts == null || plaintexts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (plaintexts.size() < PARALLEL_THRESHOLD) {
+            List<String> result = new ArrayList<>(plaintexts.size());
+            for (String value : plaintexts) {
+                result.add(encrypt(value));
+            }
+            return result;
+        }
+        return new ArrayList<>(plaintexts.parallelStream()
+                .map(this::encrypt)
+                .toList());
+    }
+
+    private String decryptOrPassThrough(String value) {
+        if (value == null || value.isEmpty()) return value;
+        return decrypt(value);
+    }
+
+    /**
+     * Wraps a sink so everything written to it is encrypted in the streaming format.
+     * Memory use is one segment regardless of content size. Closing the returned stream
+     * writes the final segment and closes the sink — content is incomplete until then.
+     */
+    public OutputStream encryptingOutputStream(OutputStream sink) throws IOException {
+        byte[] header = new byte[STREAM_HEADER_LENGTH];
+        System.arraycopy(STREAM_MAGIC, 0, header, 0, STREAM_MAGIC.length);
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(noncePrefix);
+        System.arraycopy(noncePrefix, 0, header, STREAM_MAGIC.length, STREAM_NONCE_PREFIX_LENGTH);
+        sink.write(header);
+        return new SegmentEncryptingOutputStream(sink, secretKey, header);
+    }
+
+    /**
+     * Decrypts content written by encryptingOutputStream. Each segment is authenticated before
+     * any of its bytes are returned; tampering, reordering or truncation throws an IOException.
+     */
+    public InputStream decryptingInputStream(InputStream source) throws IOException {
+        byte[] header = source.readNBytes(STREAM_HEADER_LENGTH);
+        if (!isStreamEncrypted(header)) {
+            throw new IOException("Not an encrypted stream");
+        }
+        return new SegmentDecryptingInputStream(source, secretKey, header);
+    }
+
+    // true if the bytes start with the streaming-format header (anything else is legacy plaintext)
+    public static boolean isStreamEncrypted(byte[] head) {
+        return head != null && head.length >= STREAM_HEADER_LENGTH
+                && Arrays.equals(head, 0, STREAM_MAGIC.length, STREAM_MAGIC, 0, STREAM_MAGIC.length);
+    }
+
+    // size of the plaintext inside a stream of the given encrypted size (no decryption needed)
+    public static long plaintextLength(long encryptedLength) {
+        long body = encryptedLength - STREAM_HEADER_LENGTH;
+        long fullSegment = STREAM_SEGMENT_SIZE + GCM_TAG_BYTES;
+        long segments = Math.max(1, (body + fullSegment - 1) / fullSegment);
+        return body - segments * GCM_TAG_BYTES;
+    }
+
+    private static byte[] segmentIv(byte[] header, int index, boolean last) {
+        return ByteBuffer.allocate(GCM_IV_LENGTH)
+                .put(header, STREAM_MAGIC.length, STREAM_NONCE_PREFIX_LENGTH)
+                .putInt(index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+    }
+
+    private static class SegmentEncryptingOutputStream extends OutputStream {
+        private final OutputStream sink;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final Cipher cipher = newCipher();
+        private final byte[] plain = new byte[STREAM_SEGMENT_SIZE];
+        private final byte[] sealed = new byte[STREAM_SEGMENT_SIZE + GCM_TAG_BYTES];
+        private int filled = 0;
+        private int index = 0;
+        private boolean closed = false;
+
+        SegmentEncryptingOutputStream(OutputStream sink, SecretKeySpec key, byte[] header) {
+            this.sink = sink;
+            this.key = key;
+            this.header = header;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            while (len > 0) {
+                // a full buffer is only sealed once more data arrives — otherwise it might be the last segment
+                if (filled == plain.length) {
+                    sealSegment(false);
+                }
+                int n = Math.min(len, plain.length - filled);
+                System.arraycopy(b, off, plain, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                sealSegment(true);
+            } finally {
+                sink.close();
+            }
+        }
+
+        private void sealSegment(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, segmentIv(header, index, last)));
+                cipher.updateAAD(header);
+                int n = cipher.doFinal(plain, 0, filled, sealed, 0);
+                sink.write(sealed, 0, n);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encryption failed", e);
+            }
+            filled = 0;
+            index++;
+        }
+    }
+
+    private static class SegmentDecryptingInputStream extends InputStream {
+        private final InputStream source;
+        private final SecretKeySpec key;
+        private final byte[] header;
+        private final Cipher cipher = newCipher();
+        private final byte[] sealed = new byte[STREAM_SEGMENT_SIZE + GCM_TAG_BYTES];
+        private final byte[] plain = new byte[STREAM_SEGMENT_SIZE];
+        private int plainLength = 0;
+        private int position = 0;
+        private int index = 0;
+        private boolean done = false;
+        // one byte read ahead to tell whether the current segment is the last
+        private int lookahead = -1;
+
+        SegmentDecryptingInputStream(InputStream source, SecretKeySpec key, byte[] header) {
+            this.source = source;
+            this.key = key;
+            this.header = header;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (position == plainLength) {
+                if (done) return -1;
+                openSegment();
+            }
+            int n = Math.min(len, plainLength - position);
+            System.arraycopy(plain, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        private void openSegment() throws IOException {
+            int filled = 0;
+            if (lookahead != -1) {
+                sealed[filled++] = (byte) lookahead;
+                lookahead = -1;
+            }
+            filled += source.readNBytes(sealed, filled, sealed.length - filled);
+            boolean last = filled < sealed.length || (lookahead = source.read()) == -1;
+            if (filled < GCM_TAG_BYTES) {
+                throw new EOFException("Encrypted stream truncated");
+            }
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, segmentIv(header, index, last)));
+                cipher.updateAAD(header);
+                plainLength = cipher.doFinal(sealed, 0, filled, plain, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encrypted stream failed authentication", e);
+            }
+            position = 0;
+            index++;
+            done = last;
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("AES/GCM not available", e);
+        }
+    }
 }
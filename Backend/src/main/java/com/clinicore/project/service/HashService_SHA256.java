@@ -9,17 +9,29 @@ public class HashService_SHA256 {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hashBytes = digest.digest(data);
+            return toHex(hashBytes);
 
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hashBytes) {
-                String s = Integer.toHexString(0xff & b);
-                if (s.length() == 1) hex.append('0');
-                hex.append(s);
-            }
-            return hex.toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Error hashing file", e);
+        }
+    }
 
+    // for hashing streams: feed the digest chunk by chunk, then toHex(digest.digest())
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
         } catch (Exception e) {
             throw new RuntimeException("Error hashing file", e);
         }
     }
+
+    public String toHex(byte[] hashBytes) {
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : hashBytes) {
+            String s = Integer.toHexString(0xff & b);
+            if (s.length() == 1) hex.append('0');
+            hex.append(s);
+        }
+        return hex.toString();
+    }
 }
@@ -27,14 +27,17 @@ public class InventoryService {
     private final MedicationInventoryRepository medicationInventoryRepository;
     private final MedicalConsumableRepository medicalConsumableRepository;
     private final UserProfileRepository userProfileRepository;
+    private final ResidentChangeTracker residentChangeTracker;
 
     // constructor injection of repositories
     public InventoryService(MedicationInventoryRepository medicationInventoryRepository,
                            MedicalConsumableRepository medicalConsumableRepository,
-                           UserProfileRepository userProfileRepository) {
+                           UserProfileRepository userProfileRepository,
+                           ResidentChangeTracker residentChangeTracker) {
         this.medicationInventoryRepository = medicationInventoryRepository;
         this.medicalConsumableRepository = medicalConsumableRepository;
         this.userProfileRepository = userProfileRepository;
+        this.residentChangeTracker = residentChangeTracker;
     }
 
     /**
@@ -171,6 +174,8 @@ public class InventoryService {
 
         // Save updated medication
         MedicationInventory updated = medicationInventoryRepository.save(medication);
+        // resident medication lists show inventory name and quantity
+        residentChangeTracker.inventoryItemChanged(itemId);
 
         return MedicationInventoryDTO.fromEntity(updated);
     }
@@ -186,6 +191,9 @@ public class InventoryService {
         MedicationInventory medication = medicationInventoryRepository.findById(itemId)
                 .orElseThrow(() -> new IllegalArgumentException("Medication inventory item not found with ID: " + itemId));
 
+        // residents still pointing at it change too — looked up before the delete
+        residentChangeTracker.inventoryItemChanged(itemId);
+
         // Delete from database
         medicationInventoryRepository.delete(medication);
     }
@@ -0,0 +1,167 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.ReEncryptionCheckpoint;
+import com.clinicore.project.repository.ArchivedMessageRepository;
+import com.clinicore.project.repository.ConversationSummaryRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import com.clinicore.project.repository.ReEncryptionCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Background job that moves encrypted message text onto the active key after a rotation.
+ *
+ * Walks each table by primary key in small batches (plain reads, no locking reads) and rewrites only
+ * rows not yet on the active key, using compare-and-set updates so a row written or changed
+ * concurrently is never clobbered. Each batch is one short transaction that also saves the checkpoint,
+ * so the job resumes after a restart, and the fixed delay between batches keeps it from competing
+ * with live traffic. Once every table is on the active key the job cancels itself; changing the
+ * active key again (a restart) starts a new walk.
+ */
+@Service
+public class KeyRotationService {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyRotationService.class);
+
+    private final EncryptionService encryptionService;
+    private final ReEncryptionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final List<EncryptedColumn> columns;
+    private final TaskScheduler taskScheduler;
+    private final Duration interval;
+
+    private volatile ScheduledFuture<?> task;
+
+    public KeyRotationService(EncryptionService encryptionService,
+                              MessagesRepository messagesRepository,
+                              ConversationSummaryRepository conversationSummaryRepository,
+                              ArchivedMessageRepository archivedMessageRepository,
+                              ReEncryptionCheckpointRepository checkpointRepository,
+                              TransactionTemplate transactionTemplate,
+                              TaskScheduler taskScheduler,
+                              @Value("${encryption.rotation.enabled:true}") boolean enabled,
+                              @Value("${encryption.rotation.batch-size:200}") int batchSize,
+                              @Value("${encryption.rotation.interval-ms:1000}") long intervalMs) {
+        this.encryptionService = encryptionService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.taskScheduler = taskScheduler;
+        this.interval = Duration.ofMillis(intervalMs);
+        this.columns = List.of(
+                new EncryptedColumn("communication_portal",
+                        messagesRepository::findMessagesAfterId,
+                        messagesRepository::replaceMessageIfUnchanged),
+                new EncryptedColumn("conversation_summary",
+                        conversationSummaryRepository::findPreviewsAfterId,
+                        conversationSummaryRepository::replacePreviewIfUnchanged),
+                new EncryptedColumn("communication_portal_archive",
+                        archivedMessageRepository::findMessagesAfterId,
+                        archivedMessageRepository::replaceMessageIfUnchanged));
+    }
+
+    // scheduled by hand rather than with @Scheduled so the poller can be cancelled once it's done;
+    // the active key only changes with a restart, which starts it again
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        task = taskScheduler.scheduleWithFixedDelay(this::reEncryptBatch, Instant.now().plus(interval), interval);
+    }
+
+    public void reEncryptBatch() {
+        boolean allComplete = true;
+        for (EncryptedColumn column : columns) {
+            try {
+                Boolean complete = transactionTemplate.execute(status -> processBatch(column));
+                allComplete &= Boolean.TRUE.equals(complete);
+            } catch (Exception e) {
+                // checkpoint rolled back with the batch; it's retried next tick
+                log.warn("Re-encryption batch failed for {}: {}", column.table(), e.getMessage());
+                allComplete = false;
+            }
+        }
+
+        // rows written from now on already use the active key, so there's nothing left to poll for
+        if (allComplete && task != null) {
+            task.cancel(false);
+            log.info("All tables on key {}, re-encryption job stopped", encryptionService.getActiveKeyId());
+        }
+    }
+
+    // true once the table is completely on the active key
+    private boolean processBatch(EncryptedColumn column) {
+        String targetKeyId = encryptionService.getActiveKeyId();
+        ReEncryptionCheckpoint checkpoint = checkpointRepository.findById(column.table())
+                .orElseGet(() -> new ReEncryptionCheckpoint(column.table(), targetKeyId, 0L, false, null));
+
+        if (!targetKeyId.equals(checkpoint.getTargetKeyId())) {
+            checkpoint.setTargetKeyId(targetKeyId);
+            checkpoint.setLastId(0L);
+            checkpoint.setCompleted(false);
+        }
+        if (Boolean.TRUE.equals(checkpoint.getCompleted())) return true;
+
+        List<MessagesRepository.EncryptedValue> rows =
+                column.reader().findAfterId(checkpoint.getLastId(), PageRequest.of(0, batchSize));
+
+        int rewritten = 0;
+        int skipped = 0;
+        for (MessagesRepository.EncryptedValue row : rows) {
+            String value = row.getValue();
+            if (!encryptionService.needsReEncryption(value)) continue;
+            String replacement;
+            try {
+                replacement = encryptionService.reEncrypt(value);
+            } catch (RuntimeException e) {
+                // legacy plaintext row or a key no longer in the ring — leave it as is
+                skipped++;
+                continue;
+            }
+            rewritten += column.writer().replaceIfUnchanged(row.getId(), value, replacement);
+        }
+
+        if (rows.isEmpty()) {
+            checkpoint.setCompleted(true);
+            log.info("Re-encryption of {} to key {} complete", column.table(), targetKeyId);
+        } else {
+            checkpoint.setLastId(rows.getLast().getId());
+            if (rewritten > 0 || skipped > 0) {
+                log.info("Re-encrypted {} rows of {} (skipped {}), up to id {}",
+                        rewritten, column.table(), skipped, checkpoint.getLastId());
+            }
+        }
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+        return checkpoint.getCompleted();
+    }
+
+    private record EncryptedColumn(String table, Reader reader, Writer writer) {
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        List<MessagesRepository.EncryptedValue> findAfterId(Long afterId, Pageable pageable);
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        int replaceIfUnchanged(Long id, String oldValue, String newValue);
+    }
+}
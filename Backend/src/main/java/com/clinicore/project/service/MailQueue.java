@@ -0,0 +1,96 @@
+package com.clinicore.project.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, rate-limited outbox for bulk mail (unread digests), so a batch job can't swamp the SMTP relay.
+ * One sender thread works through a fixed-size queue, at most rate-per-minute sends, evenly spaced.
+ * When the queue is full submit returns false and the caller tries again on its next run —
+ * nothing here is persisted, so work still queued at shutdown is simply redone later.
+ *
+ * Transactional mail (activation codes, password resets) keeps going straight through EmailService.
+ */
+@Service
+public class MailQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(MailQueue.class);
+
+    private final ThreadPoolTaskExecutor executor;
+    private final long intervalNanos;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter rejected;
+
+    // earliest time the next send may start; only the sender thread touches it
+    private long nextSendAt = System.nanoTime();
+
+    public MailQueue(@Value("${mail.queue.capacity:500}") int capacity,
+                     @Value("${mail.queue.rate-per-minute:30}") int ratePerMinute,
+                     MeterRegistry meterRegistry) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, ratePerMinute);
+
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(capacity);
+        executor.setThreadNamePrefix("mail-queue-");
+        executor.initialize();
+
+        this.sent = Counter.builder("mail.queue.sent").description("Queued mails sent").register(meterRegistry);
+        this.failed = Counter.builder("mail.queue.failed").description("Queued mails that failed to send").register(meterRegistry);
+        this.rejected = Counter.builder("mail.queue.rejected").description("Mails refused because the queue was full").register(meterRegistry);
+        Gauge.builder("mail.queue.size", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Mails waiting to be sent")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Queues one send. false if the queue is full — nothing was queued.
+     */
+    public boolean submit(Runnable send) {
+        try {
+            executor.execute(() -> sendPaced(send));
+            return true;
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    private void sendPaced(Runnable send) {
+        long wait = nextSendAt - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        nextSendAt = Math.max(nextSendAt, System.nanoTime()) + intervalNanos;
+
+        try {
+            send.run();
+            sent.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Queued mail failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.JobCheckpoint;
+import com.clinicore.project.repository.ArchivedMessageRepository;
+import com.clinicore.project.repository.JobCheckpointRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retention tiering for chat history: read messages older than the retention age move from
+ * communication_portal into communication_portal_archive, keeping the live table and its indexes
+ * to recent traffic. MessageService merges both tables, so paging a conversation just continues
+ * into the archive.
+ *
+ * Runs nightly and walks the live table by primary key, one short transaction per batch, stopping
+ * at the first row younger than the cutoff (ids follow send order). Unread messages stay live so
+ * unread counts never need the archive, and so do rows whose attachment is still inline
+ * (AttachmentMigrationService gets to those first). The walk resumes from a job_checkpoint row
+ * rather than the oldest row, so rows it deliberately left live aren't rescanned every night; every
+ * rescan-days it starts from the beginning once to pick up the ones that have been read since.
+ *
+ * Bytes reclaimed are counted from the text columns moved out of the live table and reported in the
+ * log and as messages.archive.bytes — attachment files live in the AttachmentStore and don't move.
+ */
+@Service
+public class MessageArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiveService.class);
+
+    private static final String CHECKPOINT_NAME = "message_archive";
+
+    private final MessagesRepository messagesRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int retentionDays;
+    private final int rescanDays;
+    private final int batchSize;
+    private final Counter archivedMessages;
+    private final Counter reclaimedBytes;
+
+    public MessageArchiveService(MessagesRepository messagesRepository,
+                                 ArchivedMessageRepository archivedMessageRepository,
+                                 JobCheckpointRepository checkpointRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${messages.archive.enabled:true}") boolean enabled,
+                                 @Value("${messages.archive.retention-days:365}") int retentionDays,
+                                 @Value("${messages.archive.rescan-days:30}") int rescanDays,
+                                 @Value("${messages.archive.batch-size:500}") int batchSize) {
+        this.messagesRepository = messagesRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.retentionDays = retentionDays;
+        this.rescanDays = rescanDays;
+        this.batchSize = batchSize;
+        this.archivedMessages = Counter.builder("messages.archive.moved")
+                .description("Messages moved from communication_portal to the archive table")
+                .register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("messages.archive.bytes")
+                .description("Message text bytes moved out of communication_portal")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${messages.archive.cron:0 0 4 * * *}")
+    public void archiveOldMessages() {
+        if (!enabled) return;
+        archiveOlderThan(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    // returns how many messages were moved
+    public long archiveOlderThan(LocalDateTime cutoff) {
+        JobCheckpoint checkpoint = loadCheckpoint();
+        long afterId = checkpoint.getLastId();
+        long moved = 0;
+        long bytes = 0;
+
+        while (true) {
+            List<MessagesRepository.ArchiveCandidate> candidates =
+                    messagesRepository.findArchiveCandidatesAfterId(afterId, PageRequest.of(0, batchSize));
+            if (candidates.isEmpty()) break;
+
+            List<Long> ids = new ArrayList<>();
+            long batchEnd = afterId;
+            boolean reachedCutoff = false;
+            for (MessagesRepository.ArchiveCandidate candidate : candidates) {
+                if (candidate.getSentAt() != null && !candidate.getSentAt().isBefore(cutoff)) {
+                    reachedCutoff = true;
+                    break;
+                }
+                if (Boolean.TRUE.equals(candidate.getIsRead()) && !Boolean.TRUE.equals(candidate.getHasLegacyBlob())) {
+                    ids.add(candidate.getId());
+                }
+                batchEnd = candidate.getId();
+            }
+
+            if (batchEnd > afterId) {
+                long end = batchEnd;
+                try {
+                    // the checkpoint moves in the same transaction as the rows, so it never gets ahead of them
+                    Long batchBytes = transactionTemplate.execute(status -> {
+                        long copied = ids.isEmpty() ? 0 : archivedMessageRepository.moveToArchive(ids);
+                        saveCheckpoint(checkpoint, end);
+                        return copied;
+                    });
+                    moved += ids.size();
+                    bytes += batchBytes != null ? batchBytes : 0;
+                    afterId = end;
+                } catch (Exception e) {
+                    // nothing committed for this batch; the next run retries it from the checkpoint
+                    log.warn("Archiving batch ending at message id {} failed: {}", end, e.getMessage());
+                    break;
+                }
+            }
+            if (reachedCutoff || candidates.size() < batchSize) break;
+        }
+
+        if (moved > 0) {
+            archivedMessages.increment(moved);
+            reclaimedBytes.increment(bytes);
+            log.info("Archived {} messages older than {}, reclaimed ~{} KB from communication_portal",
+                    moved, cutoff.toLocalDate(), bytes / 1024);
+        }
+        return moved;
+    }
+
+    // rows the walk has passed stay live if they were unread then; every rescan-days it starts over
+    // from the oldest row so the ones read since then get archived too
+    private JobCheckpoint loadCheckpoint() {
+        LocalDateTime now = LocalDateTime.now();
+        JobCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_NAME)
+                .orElseGet(() -> new JobCheckpoint(CHECKPOINT_NAME, 0L, false, now, now));
+        if (checkpoint.getPassStartedAt() == null || checkpoint.getPassStartedAt().isBefore(now.minusDays(rescanDays))) {
+            checkpoint.setLastId(0L);
+            checkpoint.setPassStartedAt(now);
+        }
+        return checkpoint;
+    }
+
+    private void saveCheckpoint(JobCheckpoint checkpoint, long lastId) {
+        checkpoint.setLastId(lastId);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+}
@@ -0,0 +1,61 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.MessageChange;
+import com.clinicore.project.repository.MessageChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes and prunes message_change, the per-user change feed behind /chat/sync.
+ * Writes join the caller's transaction so a change is only visible if the update itself committed.
+ */
+@Service
+public class MessageChangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageChangeService.class);
+
+    private final MessageChangeRepository messageChangeRepository;
+    private final int retentionDays;
+
+    public MessageChangeService(MessageChangeRepository messageChangeRepository,
+                                @Value("${messages.sync.change-retention-days:30}") int retentionDays) {
+        this.messageChangeRepository = messageChangeRepository;
+        this.retentionDays = retentionDays;
+    }
+
+    // a conversation was read: both participants' devices need to hear about it
+    @Transactional
+    public void recordRead(long conversationKey, Long readerId, Long otherUserId, LocalDateTime readAt) {
+        List<MessageChange> changes = new ArrayList<>(2);
+        changes.add(new MessageChange(null, readerId, MessageChange.ChangeType.READ, conversationKey, readerId, readAt));
+        if (otherUserId != null) {
+            changes.add(new MessageChange(null, otherUserId, MessageChange.ChangeType.READ, conversationKey, readerId, readAt));
+        }
+        messageChangeRepository.saveAll(changes);
+    }
+
+    // true if changes after this cursor may already have been pruned — the client has to do a full reload
+    @Transactional(readOnly = true)
+    public boolean isCursorExpired(long afterChangeId) {
+        if (afterChangeId == 0) return false;
+        Long minId = messageChangeRepository.findMinId();
+        return minId != null && afterChangeId < minId - 1;
+    }
+
+    @Scheduled(cron = "${messages.sync.prune-cron:0 30 3 * * *}")
+    @Transactional
+    public void pruneOldChanges() {
+        int removed = messageChangeRepository.deleteChangedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (removed > 0) {
+            log.info("Pruned {} message_change rows older than {} days", removed, retentionDays);
+        }
+    }
+}
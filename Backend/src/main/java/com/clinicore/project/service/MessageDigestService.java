@@ -0,0 +1,192 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.JobCheckpoint;
+import com.clinicore.project.entity.UserProfile;
+import com.clinicore.project.repository.JobCheckpointRepository;
+import com.clinicore.project.repository.MessageDigestStateRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import com.clinicore.project.repository.UserProfileRepository;
+import com.clinicore.project.util.ConversationKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Emails users who aren't around a summary of their unread messages, instead of a mail per message.
+ *
+ * Each run picks users whose unread conversations have been quiet for quiet-minutes, have had new
+ * activity since their last digest, and haven't had a digest within window-hours. Users online right
+ * now are skipped. Per user, unread counts come from countUnreadByConversation and are rendered as one
+ * email listing senders and counts (never message text), handed to the rate-limited MailQueue.
+ * message_digest_state is only updated once the mail has actually gone out, so a full queue or a
+ * failed send is retried on a later run.
+ *
+ * Candidates are read batch-size at a time in user id order, continuing from a job_checkpoint row
+ * and wrapping back to the start once a page comes up short. Users skipped for being online are
+ * stepped over rather than re-read every run, so they can't keep later users from ever being reached.
+ */
+@Service
+public class MessageDigestService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageDigestService.class);
+
+    private static final String CHECKPOINT_NAME = "message_digest";
+
+    private final MessageDigestStateRepository messageDigestStateRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final MessagesRepository messagesRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final PresenceService presenceService;
+    private final EmailService emailService;
+    private final MailQueue mailQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int quietMinutes;
+    private final int windowHours;
+    private final int batchSize;
+
+    // users with a digest sitting in the mail queue, so the next run doesn't queue a second one
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    public MessageDigestService(MessageDigestStateRepository messageDigestStateRepository,
+                                JobCheckpointRepository checkpointRepository,
+                                MessagesRepository messagesRepository,
+                                UserProfileRepository userProfileRepository,
+                                PresenceService presenceService,
+                                EmailService emailService,
+                                MailQueue mailQueue,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${messages.digest.enabled:true}") boolean enabled,
+                                @Value("${messages.digest.quiet-minutes:60}") int quietMinutes,
+                                @Value("${messages.digest.window-hours:24}") int windowHours,
+                                @Value("${messages.digest.batch-size:200}") int batchSize) {
+        this.messageDigestStateRepository = messageDigestStateRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.messagesRepository = messagesRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.presenceService = presenceService;
+        this.emailService = emailService;
+        this.mailQueue = mailQueue;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.quietMinutes = quietMinutes;
+        this.windowHours = windowHours;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${messages.digest.cron:0 0 * * * *}")
+    public void sendDigests() {
+        if (!enabled) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        JobCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_NAME)
+                .orElseGet(() -> new JobCheckpoint(CHECKPOINT_NAME, 0L, false, now, now));
+        List<MessageDigestStateRepository.DigestCandidate> page = messageDigestStateRepository.findDigestCandidates(
+                checkpoint.getLastId(), now.minusMinutes(quietMinutes), now.minusHours(windowHours), batchSize);
+
+        // a short page means the end was reached: start over from the lowest user id next run
+        long resumeAfter = page.size() < batchSize ? 0L : page.get(page.size() - 1).getUserId();
+        List<MessageDigestStateRepository.DigestCandidate> candidates = page.stream()
+                .filter(c -> !queued.contains(c.getUserId()) && !presenceService.isOnline(c.getUserId()))
+                .toList();
+        if (candidates.isEmpty()) {
+            saveCheckpoint(checkpoint, resumeAfter, now);
+            return;
+        }
+
+        // unread per conversation for each candidate, then every name needed in one lookup
+        Map<Long, List<Object[]>> unreadByUser = new HashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        for (MessageDigestStateRepository.DigestCandidate candidate : candidates) {
+            List<Object[]> unread = messagesRepository.countUnreadByConversation(candidate.getUserId());
+            if (unread.isEmpty()) continue;
+            unreadByUser.put(candidate.getUserId(), unread);
+            userIds.add(candidate.getUserId());
+            for (Object[] row : unread) {
+                if (row[0] == null) continue;
+                userIds.add(ConversationKey.otherParticipant((Long) row[0], candidate.getUserId()));
+            }
+        }
+        Map<Long, UserProfile> users = userProfileRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserProfile::getId, Function.identity()));
+
+        int submitted = 0;
+        for (MessageDigestStateRepository.DigestCandidate candidate : candidates) {
+            Long userId = candidate.getUserId();
+            List<Object[]> unread = unreadByUser.get(userId);
+            UserProfile recipient = users.get(userId);
+            if (unread == null || recipient == null || recipient.getEmail() == null) continue;
+
+            Map<String, Integer> unreadBySender = new LinkedHashMap<>();
+            int total = 0;
+            for (Object[] row : unread) {
+                if (row[0] == null) continue;
+                UserProfile sender = users.get(ConversationKey.otherParticipant((Long) row[0], userId));
+                String name = sender != null ? sender.getFirstName() + " " + sender.getLastName() : "A CliniCore user";
+                int count = ((Number) row[1]).intValue();
+                unreadBySender.merge(name, count, Integer::sum);
+                total += count;
+            }
+            unreadBySender = sortByCountDesc(unreadBySender);
+
+            Digest digest = new Digest(userId, recipient.getEmail(), recipient.getFirstName(), total,
+                    unreadBySender, candidate.getLastMessageId());
+            queued.add(userId);
+            if (mailQueue.submit(() -> deliver(digest))) {
+                submitted++;
+            } else {
+                queued.remove(userId);
+                log.info("Mail queue full, remaining digests wait for the next run");
+                // pick up again at this user rather than skipping the rest of the page
+                resumeAfter = userId - 1;
+                break;
+            }
+        }
+        saveCheckpoint(checkpoint, resumeAfter, now);
+        if (submitted > 0) {
+            log.info("Queued {} unread-message digests", submitted);
+        }
+    }
+
+    private void saveCheckpoint(JobCheckpoint checkpoint, long lastUserId, LocalDateTime now) {
+        if (lastUserId == 0L && checkpoint.getLastId() != 0L) {
+            checkpoint.setPassStartedAt(now);
+        }
+        checkpoint.setLastId(lastUserId);
+        checkpoint.setUpdatedAt(now);
+        transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(checkpoint));
+    }
+
+    private record Digest(Long userId, String email, String firstName, int totalUnread,
+                          Map<String, Integer> unreadBySender, Long lastMessageId) {
+    }
+
+    // runs on the mail queue thread
+    private void deliver(Digest digest) {
+        try {
+            emailService.sendUnreadMessagesDigest(digest.email(), digest.firstName(), digest.totalUnread(),
+                    digest.unreadBySender());
+            transactionTemplate.executeWithoutResult(status ->
+                    messageDigestStateRepository.markSent(digest.userId(), digest.lastMessageId(), LocalDateTime.now()));
+        } finally {
+            queued.remove(digest.userId());
+        }
+    }
+
+    private static Map<String, Integer> sortByCountDesc(Map<String, Integer> counts) {
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return sorted;
+    }
+}
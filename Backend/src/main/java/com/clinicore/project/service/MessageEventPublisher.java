@@ -0,0 +1,57 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.MessageEventDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Pushes chat events to connected clients over STOMP (/user/{userId}/queue/messages)
+ * and to any open SSE streams (MessageEventStream).
+ * Events are held until the surrounding transaction commits, so a client never
+ * hears about a message that was rolled back.
+ */
+@Service
+public class MessageEventPublisher {
+
+    public static final String USER_QUEUE = "/queue/messages";
+
+    private static final Logger log = LoggerFactory.getLogger(MessageEventPublisher.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageEventStream messageEventStream;
+
+    public MessageEventPublisher(SimpMessagingTemplate messagingTemplate,
+                                 MessageEventStream messageEventStream) {
+        this.messagingTemplate = messagingTemplate;
+        this.messageEventStream = messageEventStream;
+    }
+
+    public void publish(Long userId, MessageEventDTO event) {
+        if (userId == null || event == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(userId, event);
+                }
+            });
+        } else {
+            send(userId, event);
+        }
+    }
+
+    private void send(Long userId, MessageEventDTO event) {
+        messageEventStream.emit(userId, event);
+        try {
+            messagingTemplate.convertAndSendToUser(String.valueOf(userId), USER_QUEUE, event);
+        } catch (Exception e) {
+            // push is best-effort — the REST endpoints are still the source of truth
+            log.warn("Failed to push {} event to user {}: {}", event.getType(), userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.MessageEventDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user event streams for the SSE endpoint (/api/messages/chat/events), for networks whose proxies
+ * break WebSocket upgrades. Fed by MessageEventPublisher next to the STOMP push, so both channels
+ * see the same events, after commit, in the same order.
+ *
+ * Each open stream has its own bounded buffer. The servlet response only requests more events as
+ * it manages to write them, so a client that stops reading fills its buffer; when an event doesn't
+ * fit, that stream is ended instead of growing memory or holding up other users. The client
+ * reconnects and starts again from a fresh unread total.
+ */
+@Service
+public class MessageEventStream {
+
+    private final int bufferSize;
+
+    // userId → one sink per open stream (a user can have several tabs or devices)
+    private final ConcurrentHashMap<Long, Set<Sinks.Many<MessageEventDTO>>> streams = new ConcurrentHashMap<>();
+
+    public MessageEventStream(@Value("${messages.events.buffer-size:256}") int bufferSize,
+                              MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        Gauge.builder("messages.events.streams", streams, s -> s.values().stream().mapToInt(Set::size).sum())
+                .description("Open SSE event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a stream right away, so nothing published after this call is missed even if the
+     * caller reads other state before subscribing. Events wait in the buffer until then; a stream
+     * that is never subscribed overflows and is dropped like a stalled one.
+     */
+    public Flux<MessageEventDTO> subscribe(long userId) {
+        Sinks.Many<MessageEventDTO> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<MessageEventDTO>get(bufferSize).get());
+        streams.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(sink);
+        return sink.asFlux().doFinally(signal -> remove(userId, sink));
+    }
+
+    // called by MessageEventPublisher, after commit
+    void emit(long userId, MessageEventDTO event) {
+        Set<Sinks.Many<MessageEventDTO>> sinks = streams.get(userId);
+        if (sinks == null) return;
+
+        for (Sinks.Many<MessageEventDTO> sink : sinks) {
+            Sinks.EmitResult result;
+            // events for one user can be published from several request threads at once
+            synchronized (sink) {
+                result = sink.tryEmitNext(event);
+                // buffer full — FAIL_ZERO_SUBSCRIBER is the same overflow before the stream was subscribed
+                if (result == Sinks.EmitResult.FAIL_OVERFLOW || result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+                    // client isn't keeping up: deliver what's buffered, then end the stream
+                    sink.tryEmitComplete();
+                }
+            }
+            if (result.isFailure()) {
+                remove(userId, sink);
+            }
+        }
+    }
+
+    public int openStreams(long userId) {
+        Set<Sinks.Many<MessageEventDTO>> sinks = streams.get(userId);
+        return sinks == null ? 0 : sinks.size();
+    }
+
+    private void remove(long userId, Sinks.Many<MessageEventDTO> sink) {
+        streams.computeIfPresent(userId, (id, sinks) -> {
+            sinks.remove(sink);
+            return sinks.isEmpty() ? null : sinks;
+        });
+    }
+}
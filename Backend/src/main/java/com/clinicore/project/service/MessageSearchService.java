@@ -0,0 +1,410 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.entity.JobCheckpoint;
+import com.clinicore.project.entity.MessageSearchTokenId;
+import com.clinicore.project.repository.ArchivedMessageRepository;
+import com.clinicore.project.repository.JobCheckpointRepository;
+import com.clinicore.project.repository.MessageSearchTokenRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Word search over encrypted messages using a blind index.
+ *
+ * Each word of a message is normalized and hashed with HMAC-SHA256 under a search key, truncated
+ * to 64 bits, and stored per participant in message_search_token. A search hashes the query words
+ * the same way and intersects them with one primary-key range per word, so nothing is decrypted
+ * and the table never holds message text. Without the key the hashes can't be reversed or
+ * recomputed; what an observer can still see is which messages share a word.
+ *
+ * Matching is whole-word and case/accent-insensitive. A 64-bit hash collision would only add a
+ * false hit.
+ *
+ * New messages are indexed on a background executor once their send commits. That path is fast but
+ * not durable (a task can fail, or be lost with the process), so a catch-up job walks the message
+ * ids above the "indexed up to" checkpoint in job_checkpoint, indexes whatever this process didn't
+ * index live, and moves the checkpoint forward; after a restart it re-indexes everything above it.
+ * History older than search is covered by a backfill walking down from its own checkpoint.
+ */
+@Service
+public class MessageSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchService.class);
+
+    static final int MIN_TOKEN_LENGTH = 2;
+    // bounds index size for very long messages
+    static final int MAX_TOKENS_PER_MESSAGE = 256;
+    static final int MAX_QUERY_TOKENS = 8;
+    public static final int DEFAULT_RESULT_LIMIT = 50;
+
+    static final String CATCH_UP_CHECKPOINT = "message_search_indexed";
+    static final String BACKFILL_CHECKPOINT = "message_search_backfill";
+    // the catch-up stays this far behind the newest messages, so it doesn't pass a send that hasn't committed yet
+    private static final Duration CATCH_UP_LAG = Duration.ofMinutes(1);
+
+    private final MessageSearchTokenRepository tokenRepository;
+    private final MessagesRepository messagesRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final SecretKeySpec searchKey;
+    private final ThreadLocal<Mac> macs;
+    private final boolean backfillEnabled;
+    private final int backfillBatchSize;
+    private final ThreadPoolTaskExecutor indexExecutor;
+
+    // loaded (or seeded) on the first tick. catch-up: every message id up to lastId is indexed;
+    // backfill: walks from the newest message down, so recent history becomes searchable first —
+    // everything from lastId up is done
+    private JobCheckpoint catchUpCheckpoint;
+    private JobCheckpoint backfillCheckpoint;
+
+    // ids indexed live by this process that the catch-up hasn't passed yet, so it can skip them
+    private final Set<Long> indexedLive = ConcurrentHashMap.newKeySet();
+
+    public MessageSearchService(MessageSearchTokenRepository tokenRepository,
+                                MessagesRepository messagesRepository,
+                                ArchivedMessageRepository archivedMessageRepository,
+                                JobCheckpointRepository checkpointRepository,
+                                EncryptionService encryptionService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${message.encryption.key}") String base64EncryptionKey,
+                                @Value("${message.search.key:}") String base64SearchKey,
+                                @Value("${message.search.backfill.enabled:true}") boolean backfillEnabled,
+                                @Value("${message.search.backfill.batch-size:200}") int backfillBatchSize,
+                                @Value("${message.search.index.threads:2}") int indexThreads) {
+        this.tokenRepository = tokenRepository;
+        this.messagesRepository = messagesRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.encryptionService = encryptionService;
+        this.transactionTemplate = transactionTemplate;
+        this.searchKey = base64SearchKey == null || base64SearchKey.isBlank()
+                ? deriveSearchKey(base64EncryptionKey)
+                : toSearchKey(base64SearchKey);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.backfillEnabled = backfillEnabled;
+        this.backfillBatchSize = backfillBatchSize;
+
+        this.indexExecutor = new ThreadPoolTaskExecutor();
+        indexExecutor.setCorePoolSize(indexThreads);
+        indexExecutor.setMaxPoolSize(indexThreads);
+        indexExecutor.setQueueCapacity(1000);
+        indexExecutor.setThreadNamePrefix("search-index-");
+        // the send has already committed by now; a full queue slows that sender down rather than losing its index rows
+        indexExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // a deploy lets queued tasks finish; anything still lost is picked up by the catch-up after restart
+        indexExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        indexExecutor.setAwaitTerminationSeconds(30);
+        indexExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexExecutor.shutdown();
+    }
+
+    private static SecretKeySpec toSearchKey(String base64Key) {
+        byte[] keyBytes = Base64.getDecoder().decode(base64Key);
+        if (keyBytes.length < 32) {
+            throw new IllegalArgumentException("Search key must be at least 256 bits (32 bytes), got " + keyBytes.length);
+        }
+        return new SecretKeySpec(keyBytes, "HmacSHA256");
+    }
+
+    // no dedicated key configured: derive one from the encryption key, so the two are never the same bytes
+    private static SecretKeySpec deriveSearchKey(String base64EncryptionKey) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(Base64.getDecoder().decode(base64EncryptionKey), "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal("clinicore-message-search-v1".getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not derive search key", e);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(searchKey);
+            return mac;
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    // index one message for both participants; call in the send transaction with the plaintext
+    public void indexMessage(CommunicationPortal message, String plaintext) {
+        indexAfterCommit(List.of(message), plaintext);
+    }
+
+    // same text sent as many messages (broadcast): tokens are hashed once
+    public void indexMessages(List<CommunicationPortal> messages, String plaintext) {
+        indexAfterCommit(messages, plaintext);
+    }
+
+    // indexing starts once the send commits, on the index executor — it adds nothing to the send
+    // transaction (a broadcast is recipients x tokens x 2 rows) and a failure here can't undo delivery
+    private void indexAfterCommit(List<CommunicationPortal> messages, String plaintext) {
+        List<IndexedMessage> targets = messages.stream()
+                .map(m -> new IndexedMessage(m.getId(), m.getSenderId(), m.getRecipientId()))
+                .toList();
+        if (targets.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexExecutor.execute(() -> index(targets, plaintext));
+                }
+            });
+        } else {
+            indexExecutor.execute(() -> index(targets, plaintext));
+        }
+    }
+
+    void index(List<IndexedMessage> targets, String plaintext) {
+        try {
+            Set<Long> hashes = hashTokens(plaintext);
+            if (hashes.isEmpty()) return;
+            List<MessageSearchTokenId> rows = new ArrayList<>(targets.size() * hashes.size() * 2);
+            for (IndexedMessage target : targets) {
+                addRows(rows, target, hashes);
+            }
+            transactionTemplate.executeWithoutResult(status -> tokenRepository.insertAllIgnoringDuplicates(rows));
+            if (backfillEnabled) {
+                targets.forEach(target -> indexedLive.add(target.id()));
+            }
+        } catch (Exception e) {
+            // not in indexedLive, so the catch-up indexes them
+            log.warn("Search indexing failed for {} message(s) from id {}, left to the catch-up: {}",
+                    targets.size(), targets.getFirst().id(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ids of the user's messages containing every word of the query, newest first.
+     * Empty if the query has no searchable words.
+     */
+    @Transactional(readOnly = true)
+    public List<MessagesRepository.MessageLocation> search(Long userId, String query, Integer limit) {
+        Set<Long> hashes = hashTokens(query);
+        if (hashes.isEmpty()) {
+            return List.of();
+        }
+        if (hashes.size() > MAX_QUERY_TOKENS) {
+            throw new IllegalArgumentException("Search is limited to " + MAX_QUERY_TOKENS + " words");
+        }
+        int size = limit == null ? DEFAULT_RESULT_LIMIT : Math.min(Math.max(limit, 1), MessageService.MAX_PAGE_SIZE);
+        List<Long> ids = tokenRepository.findMessageIdsWithAllTokens(userId, hashes, hashes.size(), PageRequest.of(0, size));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<MessagesRepository.MessageLocation> locations = messagesRepository.findLocationsByIdIn(ids);
+        if (locations.size() < ids.size()) {
+            // the rest were archived — same ids, other table
+            locations = new ArrayList<>(locations);
+            locations.addAll(archivedMessageRepository.findLocationsByIdIn(ids));
+            locations.sort(Comparator.comparing(MessagesRepository.MessageLocation::getId).reversed());
+        }
+        return locations;
+    }
+
+    /**
+     * Makes sure every message above the "indexed up to" checkpoint is in the index, oldest first, one batch
+     * per tick, then moves the checkpoint past them. Messages this process already indexed live are skipped;
+     * the rest (failed or lost tasks, or anything sent before a restart) are indexed here. Stops at messages
+     * newer than CATCH_UP_LAG, whose live indexing may still be on its way.
+     */
+    @Scheduled(initialDelayString = "${message.search.backfill.interval-ms:5000}",
+               fixedDelayString = "${message.search.backfill.interval-ms:5000}")
+    public void catchUpBatch() {
+        if (!backfillEnabled) return;
+        JobCheckpoint checkpoint = loadCheckpoints()[0];
+        long afterId = checkpoint.getLastId();
+
+        PageRequest page = PageRequest.of(0, backfillBatchSize);
+        List<MessagesRepository.SearchSource> batch = new ArrayList<>(
+                messagesRepository.findSearchSourcesAfterId(afterId, page));
+        batch.addAll(archivedMessageRepository.findSearchSourcesAfterId(afterId, page));
+        batch.sort(Comparator.comparing(MessagesRepository.SearchSource::getId));
+        batch = batch.subList(0, Math.min(backfillBatchSize, batch.size()));
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(CATCH_UP_LAG);
+        List<MessageSearchTokenId> rows = new ArrayList<>();
+        List<Long> passed = new ArrayList<>();
+        int indexed = 0;
+        for (MessagesRepository.SearchSource message : batch) {
+            if (message.getSentAt() != null && message.getSentAt().isAfter(cutoff)) break;
+            if (!indexedLive.contains(message.getId())) {
+                addRows(rows, new IndexedMessage(message.getId(), message.getSenderId(), message.getRecipientId()),
+                        hashTokens(decryptForIndex(message.getMessage())));
+                indexed++;
+            }
+            passed.add(message.getId());
+        }
+        if (passed.isEmpty()) return;
+
+        // the checkpoint moves in the same transaction as the rows, so it never gets ahead of them
+        long upTo = passed.getLast();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!rows.isEmpty()) tokenRepository.insertAllIgnoringDuplicates(rows);
+            saveCheckpoint(checkpoint, upTo);
+        });
+        passed.forEach(indexedLive::remove);
+        if (indexed > 0) {
+            log.info("Search catch-up indexed {} messages not indexed live (up to id {})", indexed, upTo);
+        }
+    }
+
+    /**
+     * Indexes messages written before search existed — live and archived — one small batch per tick, newest first.
+     * Resumes after a restart from its job_checkpoint row; re-indexing is idempotent.
+     */
+    @Scheduled(initialDelayString = "${message.search.backfill.interval-ms:5000}",
+               fixedDelayString = "${message.search.backfill.interval-ms:5000}")
+    public void backfillBatch() {
+        if (!backfillEnabled) return;
+        JobCheckpoint checkpoint = loadCheckpoints()[1];
+        if (Boolean.TRUE.equals(checkpoint.getCompleted())) return;
+        long belowId = checkpoint.getLastId();
+
+        // both tiers, merged newest first — archived history is searchable too. Live is read first, so a
+        // row archived in between is seen in one read or the other (twice at worst, which is harmless)
+        PageRequest page = PageRequest.of(0, backfillBatchSize);
+        List<MessagesRepository.SearchSource> batch = new ArrayList<>(
+                messagesRepository.findSearchSourcesBelowId(belowId, page));
+        batch.addAll(archivedMessageRepository.findSearchSourcesBelowId(belowId, page));
+        if (batch.isEmpty()) {
+            checkpoint.setCompleted(true);
+            transactionTemplate.executeWithoutResult(status -> saveCheckpoint(checkpoint, belowId));
+            log.info("Message search index backfill complete");
+            return;
+        }
+        batch.sort(Comparator.comparing(MessagesRepository.SearchSource::getId).reversed());
+        batch = batch.subList(0, Math.min(backfillBatchSize, batch.size()));
+
+        List<MessageSearchTokenId> rows = new ArrayList<>();
+        for (MessagesRepository.SearchSource message : batch) {
+            addRows(rows, new IndexedMessage(message.getId(), message.getSenderId(), message.getRecipientId()),
+                    hashTokens(decryptForIndex(message.getMessage())));
+        }
+        long lowest = batch.getLast().getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            tokenRepository.insertAllIgnoringDuplicates(rows);
+            saveCheckpoint(checkpoint, lowest);
+        });
+        log.debug("Indexed {} messages for search (down to id {})", batch.size(), lowest);
+    }
+
+    /**
+     * [catch-up, backfill]. The first time, they're seeded so the two walks meet without a gap: on an empty
+     * index both start at the newest message. On an index built before the checkpoints existed, nothing
+     * above its lowest id can be trusted (live tasks may have been lost), so the catch-up re-indexes from
+     * there up and the backfill carries on below it.
+     */
+    private synchronized JobCheckpoint[] loadCheckpoints() {
+        if (catchUpCheckpoint == null) {
+            JobCheckpoint catchUp = checkpointRepository.findById(CATCH_UP_CHECKPOINT).orElse(null);
+            JobCheckpoint backfill = checkpointRepository.findById(BACKFILL_CHECKPOINT).orElse(null);
+            if (catchUp == null || backfill == null) {
+                LocalDateTime now = LocalDateTime.now();
+                Long minIndexed = tokenRepository.findMinMessageId();
+                long start = minIndexed != null ? minIndexed : newestMessageId() + 1;
+                catchUp = new JobCheckpoint(CATCH_UP_CHECKPOINT, start - 1, false, now, now);
+                backfill = new JobCheckpoint(BACKFILL_CHECKPOINT, start, false, now, now);
+                JobCheckpoint[] seeded = {catchUp, backfill};
+                transactionTemplate.executeWithoutResult(status -> checkpointRepository.saveAll(List.of(seeded)));
+            }
+            catchUpCheckpoint = catchUp;
+            backfillCheckpoint = backfill;
+        }
+        return new JobCheckpoint[]{catchUpCheckpoint, backfillCheckpoint};
+    }
+
+    private long newestMessageId() {
+        Long live = messagesRepository.findMaxId();
+        Long archived = archivedMessageRepository.findMaxId();
+        return Math.max(live != null ? live : 0L, archived != null ? archived : 0L);
+    }
+
+    private void saveCheckpoint(JobCheckpoint checkpoint, long lastId) {
+        checkpoint.setLastId(lastId);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    private String decryptForIndex(String stored) {
+        if (stored == null || stored.isEmpty()) return stored;
+        try {
+            return encryptionService.decrypt(stored);
+        } catch (Exception e) {
+            // legacy plaintext row
+            return stored;
+        }
+    }
+
+    private void addRows(List<MessageSearchTokenId> rows, IndexedMessage message, Set<Long> hashes) {
+        for (Long hash : hashes) {
+            rows.add(new MessageSearchTokenId(message.senderId(), hash, message.id()));
+            if (!Objects.equals(message.recipientId(), message.senderId())) {
+                rows.add(new MessageSearchTokenId(message.recipientId(), hash, message.id()));
+            }
+        }
+    }
+
+    // who a message is indexed for — copied out of the entity before the send transaction ends
+    record IndexedMessage(Long id, Long senderId, Long recipientId) {
+    }
+
+    Set<Long> hashTokens(String text) {
+        Set<Long> hashes = new LinkedHashSet<>();
+        Mac mac = macs.get();
+        for (String token : tokenize(text)) {
+            byte[] digest = mac.doFinal(token.getBytes(StandardCharsets.UTF_8));
+            hashes.add(ByteBuffer.wrap(digest, 0, Long.BYTES).getLong());
+        }
+        return hashes;
+    }
+
+    // lower-cased, accents stripped, split on anything that isn't a letter or digit
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) return tokens;
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+                if (tokens.size() == MAX_TOKENS_PER_MESSAGE) break;
+            }
+        }
+        return tokens;
+    }
+}
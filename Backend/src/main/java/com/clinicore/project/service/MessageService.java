@@ -2,13 +2,29 @@ package com.clinicore.project.service;
 
 import com.clinicore.project.dto.ConversationDTO;
 import com.clinicore.project.dto.MessageDTO;
+import com.clinicore.project.dto.MessageEventDTO;
+import com.clinicore.project.dto.MessagePageDTO;
+import com.clinicore.project.dto.MessageSyncDTO;
+import com.clinicore.project.entity.ArchivedMessage;
 import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.entity.ConversationSummary;
+import com.clinicore.project.entity.MessageChange;
 import com.clinicore.project.entity.UserProfile;
+import com.clinicore.project.repository.ArchivedMessageRepository;
+import com.clinicore.project.repository.ConversationSummaryRepository;
+import com.clinicore.project.repository.MessageChangeRepository;
 import com.clinicore.project.repository.MessagesRepository;
 import com.clinicore.project.repository.UserProfileRepository;
+import com.clinicore.project.util.ConversationKey;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -30,64 +46,103 @@ public class MessageService {
             "text/csv"
     );
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // rows younger than this are returned by sync but the cursor doesn't move past them yet:
+    // ids are assigned at insert, so a slower transaction can still commit a lower id
+    static final int SYNC_SETTLE_SECONDS = 5;
+
     private final MessagesRepository messagesRepository;
     private final UserProfileRepository userProfileRepository;
     private final EncryptionService encryptionService;
+    private final MessageEventPublisher messageEventPublisher;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ConversationSummaryService conversationSummaryService;
+    private final AttachmentStore attachmentStore;
+    private final AttachmentReferenceService attachmentReferenceService;
+    private final ThumbnailService thumbnailService;
+    private final MessageChangeService messageChangeService;
+    private final MessageChangeRepository messageChangeRepository;
+    private final MessageSearchService messageSearchService;
+    private final ReadReceiptCoalescer readReceiptCoalescer;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final PresenceService presenceService;
 
     public MessageService(MessagesRepository messagesRepository,
                          UserProfileRepository userProfileRepository,
-                         EncryptionService encryptionService) {
+                         EncryptionService encryptionService,
+                         MessageEventPublisher messageEventPublisher,
+                         ConversationSummaryRepository conversationSummaryRepository,
+                         ConversationSummaryService conversationSummaryService,
+                         AttachmentStore attachmentStore,
+                         AttachmentReferenceService attachmentReferenceService,
+                         ThumbnailService thumbnailService,
+                         MessageChangeService messageChangeService,
+                         MessageChangeRepository messageChangeRepository,
+                         MessageSearchService messageSearchService,
+                         ReadReceiptCoalescer readReceiptCoalescer,
+                         ArchivedMessageRepository archivedMessageRepository,
+                         PresenceService presenceService) {
         this.messagesRepository = messagesRepository;
         this.userProfileRepository = userProfileRepository;
         this.encryptionService = encryptionService;
+        this.messageEventPublisher = messageEventPublisher;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.conversationSummaryService = conversationSummaryService;
+        this.attachmentStore = attachmentStore;
+        this.attachmentReferenceService = attachmentReferenceService;
+        this.thumbnailService = thumbnailService;
+        this.messageChangeService = messageChangeService;
+        this.messageChangeRepository = messageChangeRepository;
+        this.messageSearchService = messageSearchService;
+        this.readReceiptCoalescer = readReceiptCoalescer;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.presenceService = presenceService;
     }
 
     @Transactional(readOnly = true)
     public List<ConversationDTO> getUserConversations(Long userId) {
-        List<CommunicationPortal> latestMessages = messagesRepository.findUserConversations(userId);
+        // one row per conversation from conversation_summary — no scan of the message history
+        List<ConversationSummary> summaries = conversationSummaryRepository.findByUserIdOrderByLastMessageAtDesc(userId);
 
-        if (latestMessages.isEmpty()) {
+        if (summaries.isEmpty()) {
             return new ArrayList<>();
         }
 
-        Set<Long> otherUserIds = new HashSet<>();
-        for (CommunicationPortal msg : latestMessages) {
-            Long otherUserId = msg.getSenderId().equals(userId) ? msg.getRecipientId() : msg.getSenderId();
-            otherUserIds.add(otherUserId);
-        }
+        Set<Long> otherUserIds = summaries.stream()
+                .map(ConversationSummary::getOtherUserId)
+                .collect(Collectors.toSet());
         Map<Long, UserProfile> userMap = userProfileRepository.findAllById(otherUserIds).stream()
                 .collect(Collectors.toMap(UserProfile::getId, Function.identity()));
 
-        Map<String, Long> unreadMap = new HashMap<>();
-        for (Object[] row : messagesRepository.countUnreadByConversation(userId)) {
-            unreadMap.put((String) row[0], (Long) row[1]);
-        }
+        List<String> previews = decryptAllSafe(summaries.stream().map(ConversationSummary::getLastMessage).toList());
+        Map<Long, Long> pendingReads = readReceiptCoalescer.pendingFor(userId);
 
         List<ConversationDTO> conversations = new ArrayList<>();
 
-        for (CommunicationPortal msg : latestMessages) {
+        for (int i = 0; i < summaries.size(); i++) {
+            ConversationSummary summary = summaries.get(i);
             ConversationDTO dto = new ConversationDTO();
-            dto.setConversationId(msg.getConversationId());
+            dto.setConversationId(ConversationKey.format(summary.getConversationKey()));
+            dto.setOtherUserId(summary.getOtherUserId());
 
-            Long otherUserId = msg.getSenderId().equals(userId) ? msg.getRecipientId() : msg.getSenderId();
-            dto.setOtherUserId(otherUserId);
+            PresenceService.Presence presence = presenceService.presenceOf(summary.getOtherUserId(), summary.getConversationKey());
+            dto.setOtherUserOnline(presence.online());
+            dto.setOtherUserLastSeen(presence.lastSeen());
+            dto.setOtherUserTyping(presence.typing());
 
-            UserProfile otherUser = userMap.get(otherUserId);
+            UserProfile otherUser = userMap.get(summary.getOtherUserId());
             if (otherUser != null) {
                 dto.setOtherUserName(otherUser.getFirstName() + " " + otherUser.getLastName());
                 dto.setOtherUserRole(otherUser.getRole() != null ? otherUser.getRole().name() : null);
             }
 
-            // Decrypt the last message
-            String decryptedMessage = decryptSafe(msg.getMessage());
-
-            dto.setLastMessage(decryptedMessage);
-            dto.setLastMessageType(msg.getMessageType() != null ? msg.getMessageType().name() : "TEXT");
-            dto.setLastMessageAt(msg.getSentAt());
-            dto.setLastMessageSenderId(msg.getSenderId());
-
-            Long unread = unreadMap.getOrDefault(msg.getConversationId(), 0L);
-            dto.setUnreadCount(unread.intValue());
+            dto.setLastMessage(previews.get(i));
+            dto.setLastMessageType(summary.getLastMessageType() != null ? summary.getLastMessageType().name() : "TEXT");
+            dto.setLastMessageAt(summary.getLastMessageAt());
+            dto.setLastMessageSenderId(summary.getLastSenderId());
+            dto.setUnreadCount(unreadAfterPendingRead(summary, pendingReads.get(summary.getConversationKey())));
 
             conversations.add(dto);
         }
@@ -96,9 +151,147 @@ public class MessageService {
     }
 
     @Transactional(readOnly = true)
-    public List<MessageDTO> getConversationMessages(String conversationId) {
-        List<CommunicationPortal> messages = messagesRepository.findByConversationIdOrderBySentAtAsc(conversationId);
+    public List<MessageDTO> getConversationMessages(long conversationKey) {
+        List<CommunicationPortal> live = messagesRepository.findByConversationKeyOrderBySentAtAsc(conversationKey);
+        List<ArchivedMessage> archived = archivedMessageRepository.findByConversationKeyOrderByIdAsc(conversationKey);
+        return toMessageDTOs(mergeTiers(live, archived, true, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Keyset-paged conversation history. Only the returned page is loaded and decrypted.
+     * before → messages older than that id (newest page when both cursors are null)
+     * after  → messages newer than that id (for catching up after a reconnect)
+     */
+    @Transactional(readOnly = true)
+    public MessagePageDTO getConversationMessagesPage(long conversationKey, Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        // fetch one extra row to know if there's another page without a COUNT
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        // same cursor on both tiers, merged by id — older pages continue into the archive
+        List<CommunicationPortal> rows;
+        if (after != null) {
+            rows = mergeTiers(
+                    messagesRepository.findByConversationKeyAndIdGreaterThanOrderByIdAsc(conversationKey, after, fetch),
+                    archivedMessageRepository.findByConversationKeyAndIdGreaterThanOrderByIdAsc(conversationKey, after, fetch),
+                    true, pageSize + 1);
+        } else if (before != null) {
+            rows = mergeTiers(
+                    messagesRepository.findByConversationKeyAndIdLessThanOrderByIdDesc(conversationKey, before, fetch),
+                    archivedMessageRepository.findByConversationKeyAndIdLessThanOrderByIdDesc(conversationKey, before, fetch),
+                    false, pageSize + 1);
+        } else {
+            rows = mergeTiers(
+                    messagesRepository.findByConversationKeyOrderByIdDesc(conversationKey, fetch),
+                    archivedMessageRepository.findByConversationKeyOrderByIdDesc(conversationKey, fetch),
+                    false, pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<CommunicationPortal> page = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+        if (after == null) {
+            // backwards pages come newest-first from the index; the client renders oldest-first
+            Collections.reverse(page);
+        }
+
+        Long nextCursor;
+        if (after != null) {
+            nextCursor = page.isEmpty() ? after : page.getLast().getId();
+        } else {
+            nextCursor = hasMore ? page.getFirst().getId() : null;
+        }
 
+        return new MessagePageDTO(toMessageDTOs(page), nextCursor, hasMore);
+    }
+
+    // live rows plus archived rows of the same range, in id order, capped at limit
+    private List<CommunicationPortal> mergeTiers(List<CommunicationPortal> live, List<ArchivedMessage> archived,
+                                                 boolean ascending, int limit) {
+        if (archived.isEmpty()) return live;
+        List<CommunicationPortal> merged = new ArrayList<>(live.size() + archived.size());
+        merged.addAll(live);
+        archived.forEach(row -> merged.add(row.toMessage()));
+        Comparator<CommunicationPortal> byId = Comparator.comparing(CommunicationPortal::getId);
+        merged.sort(ascending ? byId : byId.reversed());
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * Everything new for a user since a sync cursor: messages sent/received and read-state changes.
+     * The cursor is "{lastMessageId}.{lastChangeId}"; null or empty starts from the beginning, archived
+     * messages included, so a client resyncing after resetRequired gets its whole history back.
+     * Clients should de-duplicate by message id — the newest few seconds are repeated on the next
+     * call (see SYNC_SETTLE_SECONDS).
+     */
+    @Transactional(readOnly = true)
+    public MessageSyncDTO syncSince(Long userId, String cursor, Integer limit) {
+        long[] since = parseSyncCursor(cursor);
+        long afterMessageId = since[0];
+        long afterChangeId = since[1];
+
+        if (messageChangeService.isCursorExpired(afterChangeId)) {
+            return new MessageSyncDTO(List.of(), List.of(), null, false, true);
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        LocalDateTime settledBefore = LocalDateTime.now().minusSeconds(SYNC_SETTLE_SECONDS);
+
+        // both tiers, merged by id like conversation paging; a recent cursor is past every archived id
+        List<CommunicationPortal> rows = mergeTiers(
+                messagesRepository.findForUserAfterId(userId, afterMessageId, pageSize + 1),
+                archivedMessageRepository.findForUserAfterId(userId, afterMessageId, pageSize + 1),
+                true, pageSize + 1);
+        boolean moreMessages = rows.size() > pageSize;
+        List<CommunicationPortal> messages = moreMessages ? rows.subList(0, pageSize) : rows;
+        long nextMessageId = afterMessageId;
+        for (CommunicationPortal msg : messages) {
+            if (msg.getSentAt() == null || !msg.getSentAt().isBefore(settledBefore)) break;
+            nextMessageId = msg.getId();
+        }
+
+        List<MessageChange> changeRows = messageChangeRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(
+                userId, afterChangeId, PageRequest.of(0, pageSize + 1));
+        boolean moreChanges = changeRows.size() > pageSize;
+        List<MessageChange> changes = moreChanges ? changeRows.subList(0, pageSize) : changeRows;
+        long nextChangeId = afterChangeId;
+        boolean changesSettled = true;
+        List<MessageEventDTO> changeEvents = new ArrayList<>(changes.size());
+        for (MessageChange change : changes) {
+            changesSettled = changesSettled && change.getChangedAt().isBefore(settledBefore);
+            if (changesSettled) {
+                nextChangeId = change.getId();
+            }
+            changeEvents.add(MessageEventDTO.readReceipt(ConversationKey.format(change.getConversationKey()), change.getActorId(), change.getChangedAt()));
+        }
+
+        // only report more if the cursor can actually move — otherwise the client would spin
+        boolean hasMore = (moreMessages && nextMessageId > afterMessageId)
+                || (moreChanges && nextChangeId > afterChangeId);
+
+        return new MessageSyncDTO(toMessageDTOs(messages), changeEvents,
+                nextMessageId + "." + nextChangeId, hasMore, false);
+    }
+
+    private long[] parseSyncCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new long[]{0, 0};
+        }
+        String[] parts = cursor.split("\\.");
+        try {
+            if (parts.length != 2) throw new NumberFormatException();
+            long messageId = Long.parseLong(parts[0]);
+            long changeId = Long.parseLong(parts[1]);
+            if (messageId < 0 || changeId < 0) throw new NumberFormatException();
+            return new long[]{messageId, changeId};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+        }
+    }
+
+    private List<MessageDTO> toMessageDTOs(List<CommunicationPortal> messages) {
         if (messages.isEmpty()) {
             return new ArrayList<>();
         }
@@ -111,19 +304,19 @@ public class MessageService {
         Map<Long, UserProfile> userMap = userProfileRepository.findAllById(userIds).stream()
                 .collect(Collectors.toMap(UserProfile::getId, Function.identity()));
 
-        return messages.stream()
-                .map(msg -> {
-                    // decrypt message content before building DTO
-                    String decrypted = decryptSafe(msg.getMessage());
-                    msg.setMessage(decrypted);
-
-                    UserProfile sender = userMap.get(msg.getSenderId());
-                    UserProfile recipient = userMap.get(msg.getRecipientId());
-                    String senderName = sender != null ? sender.getFirstName() + " " + sender.getLastName() : null;
-                    String recipientName = recipient != null ? recipient.getFirstName() + " " + recipient.getLastName() : null;
-                    return MessageDTO.fromEntityWithNames(msg, senderName, recipientName);
-                })
-                .collect(Collectors.toList());
+        // decrypt the whole page in one batch; plaintext goes on the DTO, never back onto the entity
+        List<String> decrypted = decryptAllSafe(messages.stream().map(CommunicationPortal::getMessage).toList());
+
+        List<MessageDTO> result = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            CommunicationPortal msg = messages.get(i);
+            UserProfile sender = userMap.get(msg.getSenderId());
+            UserProfile recipient = userMap.get(msg.getRecipientId());
+            String senderName = sender != null ? sender.getFirstName() + " " + sender.getLastName() : null;
+            String recipientName = recipient != null ? recipient.getFirstName() + " " + recipient.getLastName() : null;
+            result.add(MessageDTO.fromEntityWithNames(msg, senderName, recipientName, decrypted.get(i)));
+        }
+        return result;
     }
 
     @Transactional
@@ -141,22 +334,92 @@ public class MessageService {
         message.setMessageType(CommunicationPortal.MessageType.TEXT);
 
         messagesRepository.save(message);
+        conversationSummaryService.recordMessage(message);
+        messageSearchService.indexMessage(message, messageText);
 
         // build DTO with plaintext directly — do NOT modify the managed entity
         // (Hibernate dirty-checking would overwrite the encrypted value back to plaintext)
         String senderName = sender.getFirstName() + " " + sender.getLastName();
         String recipientName = recipient.getFirstName() + " " + recipient.getLastName();
 
-        return MessageDTO.fromEntityWithNames(message, senderName, recipientName, messageText);
+        MessageDTO dto = MessageDTO.fromEntityWithNames(message, senderName, recipientName, messageText);
+        publishNewMessage(dto);
+        return dto;
+    }
+
+    /**
+     * Sends the same text from an admin to many users at once (facility-wide announcements).
+     * Recipients are the explicit ids if given, otherwise everyone with the role. Ciphertexts are
+     * produced in parallel (one IV each), then messages and inbox rows go in as JDBC batches —
+     * all in one transaction, so a broadcast is delivered to everyone or no one.
+     * Returns the number of recipients.
+     */
+    @Transactional
+    public int broadcastMessage(Long senderId, String messageText,
+                                UserProfile.Role role, Collection<Long> recipientIds) {
+        UserProfile sender = userProfileRepository.findById(senderId)
+                .orElseThrow(() -> new RuntimeException("Sender not found"));
+        if (sender.getRole() != UserProfile.Role.ADMIN) {
+            throw new SecurityException("Only administrators can send broadcasts");
+        }
+
+        List<UserProfile> recipients;
+        if (recipientIds != null && !recipientIds.isEmpty()) {
+            recipients = userProfileRepository.findAllById(recipientIds);
+        } else if (role != null) {
+            recipients = userProfileRepository.findByRole(role);
+        } else {
+            throw new IllegalArgumentException("Broadcast needs a role or recipient ids");
+        }
+        recipients = recipients.stream()
+                .filter(r -> !r.getId().equals(senderId))
+                .toList();
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+
+        List<String> ciphertexts = encryptionService.encryptAll(Collections.nCopies(recipients.size(), messageText));
+
+        LocalDateTime now = LocalDateTime.now();
+        CommunicationPortal.UserRole senderRole = convertRole(sender.getRole());
+        List<CommunicationPortal> messages = new ArrayList<>(recipients.size());
+        for (int i = 0; i < recipients.size(); i++) {
+            UserProfile recipient = recipients.get(i);
+            CommunicationPortal message = new CommunicationPortal();
+            message.setSenderId(senderId);
+            message.setSenderRole(senderRole);
+            message.setRecipientId(recipient.getId());
+            message.setRecipientRole(convertRole(recipient.getRole()));
+            message.setMessage(ciphertexts.get(i));
+            message.setMessageType(CommunicationPortal.MessageType.TEXT);
+            // batch insert skips @PrePersist, so set what it would have
+            message.setSentAt(now);
+            message.setIsRead(false);
+            message.setConversationKey(ConversationKey.of(senderId, recipient.getId()));
+            messages.add(message);
+        }
+
+        messagesRepository.insertAll(messages);
+        conversationSummaryService.recordMessages(messages);
+        messageSearchService.indexMessages(messages, messageText);
+
+        String senderName = sender.getFirstName() + " " + sender.getLastName();
+        for (int i = 0; i < messages.size(); i++) {
+            UserProfile recipient = recipients.get(i);
+            publishNewMessage(MessageDTO.fromEntityWithNames(messages.get(i), senderName,
+                    recipient.getFirstName() + " " + recipient.getLastName(), messageText));
+        }
+        return messages.size();
     }
 
     @Transactional
     public MessageDTO sendMessageWithAttachment(Long senderId, Long recipientId,
                                                  String messageText,
-                                                 byte[] attachmentData,
+                                                 InputStream attachmentStream,
+                                                 long attachmentSize,
                                                  String attachmentName,
-                                                 String contentType) {
-        if (attachmentData == null || attachmentData.length == 0) {
+                                                 String contentType) throws IOException {
+        if (attachmentStream == null || attachmentSize <= 0) {
             throw new IllegalArgumentException("Attachment is empty");
         }
 
@@ -170,6 +433,12 @@ public class MessageService {
 
         String plaintext = messageText == null ? "" : messageText;
 
+        // streamed to the attachment store — the row only keeps the content hash
+        AttachmentStore.StoredAttachment stored = attachmentStore.store(attachmentStream);
+        // same content sent twice shares one file; the count keeps it until both messages are gone.
+        // taken straight away, so a rollback anywhere below still leaves the file to the sweep
+        attachmentReferenceService.acquire(stored);
+
         CommunicationPortal message = new CommunicationPortal();
         message.setSenderId(senderId);
         message.setSenderRole(convertRole(sender.getRole()));
@@ -179,21 +448,37 @@ public class MessageService {
         message.setMessageType(messageType);
         message.setAttachmentName(attachmentName);
         message.setAttachmentType(normalizedType);
-        message.setAttachmentData(attachmentData);
+        message.setAttachmentKey(stored.key());
+        message.setAttachmentSize(stored.size());
 
         CommunicationPortal saved = messagesRepository.save(message);
+        conversationSummaryService.recordMessage(saved);
+        messageSearchService.indexMessage(saved, plaintext);
+        if (messageType == CommunicationPortal.MessageType.IMAGE) {
+            thumbnailService.generateAfterCommit(saved.getId(), stored.key());
+        }
 
         String senderName = sender.getFirstName() + " " + sender.getLastName();
         String recipientName = recipient.getFirstName() + " " + recipient.getLastName();
 
         // return plaintext in DTO — empty string encrypts to non-empty Base64 and would render as gibberish
-        return MessageDTO.fromEntityWithNames(saved, senderName, recipientName, plaintext);
+        MessageDTO dto = MessageDTO.fromEntityWithNames(saved, senderName, recipientName, plaintext);
+        publishNewMessage(dto);
+        return dto;
+    }
+
+    // preview for an IMAGE attachment, or null while it's still being generated (or never will be)
+    public Resource openThumbnail(MessagesRepository.AttachmentView view) throws IOException {
+        return view.getThumbnailKey() != null ? attachmentStore.load(view.getThumbnailKey()) : null;
     }
 
     @Transactional(readOnly = true)
     public MessagesRepository.AttachmentView getAttachment(Long messageId, Long requestingUserId) {
         MessagesRepository.AttachmentView view = messagesRepository.findAttachmentById(messageId);
-        if (view == null || view.getAttachmentData() == null) {
+        if (view == null) {
+            view = archivedMessageRepository.findAttachmentById(messageId);
+        }
+        if (view == null || view.getAttachmentName() == null) {
             return null;
         }
         // only sender or recipient may fetch the binary
@@ -204,6 +489,17 @@ public class MessageService {
         return view;
     }
 
+    // content for an attachment already authorized by getAttachment; null if it's gone
+    @Transactional(readOnly = true)
+    public Resource openAttachment(MessagesRepository.AttachmentView view) throws IOException {
+        if (view.getAttachmentKey() != null) {
+            return attachmentStore.load(view.getAttachmentKey());
+        }
+        // not migrated yet — still inline in communication_portal
+        byte[] legacy = messagesRepository.findAttachmentDataById(view.getId());
+        return legacy != null ? new ByteArrayResource(legacy) : null;
+    }
+
     private CommunicationPortal.MessageType validateAndDetectType(String contentType) {
         if (contentType == null) {
             throw new IllegalArgumentException("Missing content type");
@@ -232,15 +528,50 @@ public class MessageService {
         return new UserProfile[]{sender, recipient};
     }
 
-    @Transactional
-    public void markConversationAsRead(String conversationId, Long userId) {
-        messagesRepository.bulkMarkAsRead(conversationId, userId);
+    /**
+     * Marks a conversation read up to a message id (its latest message when null).
+     * Only queued here — ReadReceiptCoalescer writes it in the next batched flush, and
+     * reopening a thread that's already read doesn't write anything at all.
+     */
+    @Transactional(readOnly = true)
+    public void markConversationAsRead(long conversationKey, Long userId, Long upToMessageId) {
+        ConversationSummary summary = conversationSummaryRepository.findByUserIdAndConversationKey(userId, conversationKey);
+        if (summary == null || summary.getUnreadCount() == null || summary.getUnreadCount() == 0) return;
+
+        long upTo = upToMessageId != null
+                ? Math.min(upToMessageId, summary.getLastMessageId())
+                : summary.getLastMessageId();
+        Long alreadyQueued = readReceiptCoalescer.pendingUpTo(conversationKey, userId);
+        if (alreadyQueued != null && alreadyQueued >= upTo) return;
+
+        readReceiptCoalescer.mark(conversationKey, userId, upTo);
     }
 
     @Transactional(readOnly = true)
     public Integer getTotalUnreadCount(Long userId) {
-        Integer count = messagesRepository.countTotalUnread(userId);
-        return count != null ? count : 0;
+        Long count = conversationSummaryRepository.sumUnreadByUserId(userId);
+        long total = count != null ? count : 0;
+
+        // subtract what queued read marks will clear once flushed
+        Map<Long, Long> pendingReads = readReceiptCoalescer.pendingFor(userId);
+        if (!pendingReads.isEmpty()) {
+            for (ConversationSummary summary : conversationSummaryRepository
+                    .findByUserIdAndConversationKeyIn(userId, pendingReads.keySet())) {
+                int stored = summary.getUnreadCount() != null ? summary.getUnreadCount() : 0;
+                total -= stored - unreadAfterPendingRead(summary, pendingReads.get(summary.getConversationKey()));
+            }
+        }
+        return (int) Math.max(total, 0);
+    }
+
+    // unread count of a summary row once a queued read mark is applied
+    private int unreadAfterPendingRead(ConversationSummary summary, Long upTo) {
+        int stored = summary.getUnreadCount() != null ? summary.getUnreadCount() : 0;
+        if (upTo == null || stored == 0) return stored;
+        if (summary.getLastMessageId() <= upTo) return 0;
+        // newer messages arrived after the mark — only those stay unread
+        return (int) messagesRepository.countByConversationKeyAndRecipientIdAndIsReadFalseAndIdGreaterThan(
+                summary.getConversationKey(), summary.getUserId(), upTo);
     }
 
     @Transactional(readOnly = true)
@@ -252,6 +583,15 @@ public class MessageService {
         return userProfileRepository.findByIdNot(currentUserId);
     }
 
+    // both participants get the message (sender may have the thread open on another device)
+    private void publishNewMessage(MessageDTO dto) {
+        MessageEventDTO event = MessageEventDTO.newMessage(dto);
+        messageEventPublisher.publish(dto.getRecipientId(), event);
+        messageEventPublisher.publish(dto.getSenderId(), event);
+        messageEventPublisher.publish(dto.getRecipientId(),
+                MessageEventDTO.unreadCount(dto.getConversationId(), 1));
+    }
+
     // try to decrypt
     private String decryptSafe(String message) {
         if (message == null || message.isEmpty()) return message;
@@ -263,15 +603,18 @@ public class MessageService {
         }
     }
 
+    // batch version of decryptSafe — if any row is legacy plaintext, fall back to row-by-row
+    private List<String> decryptAllSafe(List<String> messages) {
+        try {
+            return encryptionService.decryptAll(messages);
+        } catch (Exception e) {
+            return messages.stream().map(this::decryptSafe).collect(Collectors.toList());
+        }
+    }
+
     // same values, different enums
     private CommunicationPortal.UserRole convertRole(UserProfile.Role role) {
         if (role == null) return null;
         return CommunicationPortal.UserRole.valueOf(role.name());
     }
-
-    public String generateConversationId(long userId1, long userId2) {
-        long smaller = Math.min(userId1, userId2);
-        long larger = Math.max(userId1, userId2);
-        return smaller + "_" + larger;
-    }
 }
@@ -0,0 +1,149 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.MessageEventDTO;
+import com.clinicore.project.util.ConversationKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Online / last seen / typing, held only in memory — nothing here touches the database.
+ *
+ * A user is online while they have an open STOMP session or pinged within online-ttl. Pings come
+ * from the /chat/presence/ping endpoint or the /app/presence.ping STOMP destination; typing from
+ * /chat/typing or /app/typing, and expires on its own after typing-ttl so a closed tab never leaves
+ * "typing..." behind. Entries are evicted once they're older than last-seen-retention.
+ *
+ * Per instance: behind a load balancer a user only shows as online on the instance they talk to.
+ */
+@Service
+public class PresenceService {
+
+    private final MessageEventPublisher messageEventPublisher;
+    private final long onlineTtlMillis;
+    private final long typingTtlMillis;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    // userId → last activity (epoch millis)
+    private final ConcurrentHashMap<Long, Long> lastSeen = new ConcurrentHashMap<>();
+    // userId → open STOMP sessions
+    private final ConcurrentHashMap<Long, Integer> openSessions = new ConcurrentHashMap<>();
+    // userId → conversation they're typing in, until when
+    private final ConcurrentHashMap<Long, Typing> typing = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PresenceService(MessageEventPublisher messageEventPublisher,
+                           @Value("${presence.online-ttl-seconds:60}") long onlineTtlSeconds,
+                           @Value("${presence.typing-ttl-seconds:6}") long typingTtlSeconds,
+                           @Value("${presence.last-seen-retention-hours:168}") long retentionHours) {
+        this(messageEventPublisher, onlineTtlSeconds, typingTtlSeconds, retentionHours, System::currentTimeMillis);
+    }
+
+    PresenceService(MessageEventPublisher messageEventPublisher, long onlineTtlSeconds, long typingTtlSeconds,
+                    long retentionHours, LongSupplier clock) {
+        this.messageEventPublisher = messageEventPublisher;
+        this.onlineTtlMillis = onlineTtlSeconds * 1000;
+        this.typingTtlMillis = typingTtlSeconds * 1000;
+        this.retentionMillis = retentionHours * 3600_000;
+        this.clock = clock;
+    }
+
+    public record Presence(boolean online, LocalDateTime lastSeen, boolean typing) {
+    }
+
+    private record Typing(long conversationKey, long expiresAt) {
+    }
+
+    public void ping(long userId) {
+        lastSeen.put(userId, clock.getAsLong());
+    }
+
+    /**
+     * Starts or stops the typing indicator and tells the other participant right away.
+     * Clients repeat "true" every few seconds while typing; silence expires it.
+     */
+    public void setTyping(long userId, long conversationKey, boolean isTyping) {
+        if (!ConversationKey.isParticipant(conversationKey, userId)) {
+            throw new IllegalArgumentException("Not a participant of this conversation");
+        }
+        long other = ConversationKey.otherParticipant(conversationKey, userId);
+        long now = clock.getAsLong();
+        lastSeen.put(userId, now);
+        if (isTyping) {
+            typing.put(userId, new Typing(conversationKey, now + typingTtlMillis));
+        } else {
+            typing.remove(userId);
+        }
+        messageEventPublisher.publish(other,
+                MessageEventDTO.typing(ConversationKey.format(conversationKey), userId, isTyping));
+    }
+
+    /**
+     * What a conversation partner sees of userId. typing is only true for that conversation.
+     */
+    public Presence presenceOf(long userId, long conversationKey) {
+        long now = clock.getAsLong();
+        Long seen = lastSeen.get(userId);
+        boolean online = isOnline(userId, seen, now);
+        Typing t = typing.get(userId);
+        boolean isTyping = t != null && t.conversationKey() == conversationKey && t.expiresAt() > now;
+        LocalDateTime lastSeenAt = seen == null ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(seen), ZoneId.systemDefault());
+        return new Presence(online, lastSeenAt, isTyping);
+    }
+
+    public boolean isOnline(long userId) {
+        return isOnline(userId, lastSeen.get(userId), clock.getAsLong());
+    }
+
+    private boolean isOnline(long userId, Long seen, long now) {
+        return openSessions.containsKey(userId) || (seen != null && now - seen < onlineTtlMillis);
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getUser());
+        if (userId == null) return;
+        openSessions.merge(userId, 1, Integer::sum);
+        ping(userId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Long userId = userIdOf(event.getUser());
+        if (userId == null) return;
+        // drop the entry at zero, so containsKey means "has a session"
+        openSessions.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+        typing.remove(userId);
+        ping(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${presence.evict-interval-ms:60000}")
+    public void evictExpired() {
+        long now = clock.getAsLong();
+        typing.values().removeIf(t -> t.expiresAt() <= now);
+        lastSeen.entrySet().removeIf(e -> now - e.getValue() > retentionMillis && !openSessions.containsKey(e.getKey()));
+    }
+
+    // principal name is the userId (see StompAuthChannelInterceptor)
+    private static Long userIdOf(Principal principal) {
+        if (principal == null) return null;
+        try {
+            return Long.parseLong(principal.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
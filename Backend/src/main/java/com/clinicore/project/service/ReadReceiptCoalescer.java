@@ -0,0 +1,181 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.MessageEventDTO;
+import com.clinicore.project.repository.ConversationSummaryRepository;
+import com.clinicore.project.repository.MessagesRepository;
+import com.clinicore.project.repository.MessagesRepositoryCustom.ReadMark;
+import com.clinicore.project.util.ConversationKey;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for mark-as-read.
+ *
+ * Opening a thread only records (conversation, user) → read up to message id in memory; repeat opens
+ * collapse into one entry holding the highest id. A scheduled flush applies everything buffered in
+ * one transaction: one JDBC batch of UPDATEs on communication_portal, one batch of unread recounts on
+ * conversation_summary, then the change-feed rows and push events for marks that actually changed
+ * something. Until a mark is committed, pendingFor() lets MessageService report unread counts as if
+ * it already were.
+ *
+ * The flush runs on its own thread rather than the shared @Scheduled pool, so a long archive walk or
+ * rotation batch can't hold it up. The buffer is per instance: a crash loses whatever was marked since
+ * the last flush that committed — normally one interval, longer only while flushes are failing (a
+ * failed flush puts its marks back and retries). Lost marks aren't harmful; the messages just stay
+ * unread and the next open marks them again.
+ */
+@Service
+public class ReadReceiptCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReceiptCoalescer.class);
+
+    private static final Comparator<ReadMark> LOCK_ORDER =
+            Comparator.comparingLong(ReadMark::conversationKey).thenComparingLong(ReadMark::userId);
+
+    private final MessagesRepository messagesRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final MessageChangeService messageChangeService;
+    private final MessageEventPublisher messageEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalMs;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    // waiting for the next flush
+    private final ConcurrentHashMap<ReadTarget, Long> pending = new ConcurrentHashMap<>();
+    // taken by the running flush, still visible to readers until it commits
+    private final ConcurrentHashMap<ReadTarget, Long> inFlight = new ConcurrentHashMap<>();
+
+    public ReadReceiptCoalescer(MessagesRepository messagesRepository,
+                                ConversationSummaryRepository conversationSummaryRepository,
+                                MessageChangeService messageChangeService,
+                                MessageEventPublisher messageEventPublisher,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${messages.read-receipts.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.messagesRepository = messagesRepository;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.messageChangeService = messageChangeService;
+        this.messageEventPublisher = messageEventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("read-receipt-flush-");
+        // a flush in progress finishes before the final one in flushOnShutdown
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.initialize();
+        Duration interval = Duration.ofMillis(flushIntervalMs);
+        scheduler.scheduleWithFixedDelay(this::flush, Instant.now().plus(interval), interval);
+    }
+
+    public void mark(long conversationKey, long userId, long upToMessageId) {
+        pending.merge(new ReadTarget(conversationKey, userId), upToMessageId, Math::max);
+    }
+
+    /**
+     * A user's read marks not yet committed: conversationKey → read up to this message id.
+     */
+    public Map<Long, Long> pendingFor(long userId) {
+        Map<Long, Long> result = new HashMap<>();
+        collect(inFlight, userId, result);
+        collect(pending, userId, result);
+        return result;
+    }
+
+    // highest uncommitted mark for one conversation, or null
+    public Long pendingUpTo(long conversationKey, long userId) {
+        ReadTarget target = new ReadTarget(conversationKey, userId);
+        Long queued = pending.get(target);
+        Long flushing = inFlight.get(target);
+        if (queued == null) return flushing;
+        return flushing == null ? queued : Math.max(queued, flushing);
+    }
+
+    private static void collect(Map<ReadTarget, Long> source, long userId, Map<Long, Long> into) {
+        source.forEach((target, upTo) -> {
+            if (target.userId() == userId) {
+                into.merge(target.conversationKey(), upTo, Math::max);
+            }
+        });
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+
+        List<ReadMark> marks = new ArrayList<>();
+        for (ReadTarget target : pending.keySet()) {
+            Long upTo = pending.remove(target);
+            if (upTo == null) continue;
+            inFlight.put(target, upTo);
+            marks.add(new ReadMark(target.conversationKey(), target.userId(), upTo));
+        }
+        // fixed order, so two instances flushing at once lock rows in the same sequence
+        marks.sort(LOCK_ORDER);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(marks));
+        } catch (Exception e) {
+            // back into the buffer, merged with anything marked meanwhile; retried next tick
+            for (ReadMark mark : marks) {
+                mark(mark.conversationKey(), mark.userId(), mark.upToMessageId());
+            }
+            log.warn("Failed to flush {} read marks: {}", marks.size(), e.getMessage());
+        } finally {
+            inFlight.clear();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    private void apply(List<ReadMark> marks) {
+        LocalDateTime readAt = LocalDateTime.now();
+        int[] updated = messagesRepository.markReadUpTo(marks, readAt);
+
+        List<ReadMark> changed = new ArrayList<>();
+        for (int i = 0; i < marks.size(); i++) {
+            if (updated[i] != 0) changed.add(marks.get(i));
+        }
+        if (changed.isEmpty()) return;
+        conversationSummaryRepository.recountUnread(changed);
+
+        // reader's other sessions drop their badge, the other participant sees the receipt
+        for (int i = 0; i < marks.size(); i++) {
+            if (updated[i] == 0) continue;
+            ReadMark mark = marks.get(i);
+            long otherUserId = ConversationKey.otherParticipant(mark.conversationKey(), mark.userId());
+            String conversationId = ConversationKey.format(mark.conversationKey());
+            messageChangeService.recordRead(mark.conversationKey(), mark.userId(), otherUserId, readAt);
+            // a negative count means the driver didn't report how many rows changed
+            if (updated[i] > 0) {
+                messageEventPublisher.publish(mark.userId(), MessageEventDTO.unreadCount(conversationId, -updated[i]));
+            }
+            messageEventPublisher.publish(otherUserId, MessageEventDTO.readReceipt(conversationId, mark.userId(), readAt));
+        }
+    }
+
+    private record ReadTarget(long conversationKey, long userId) {
+    }
+}
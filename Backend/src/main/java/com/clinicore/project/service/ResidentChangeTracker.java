@@ -0,0 +1,48 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.repository.MedicalProfileRepository;
+import com.clinicore.project.repository.MedicationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Where write paths report that what a resident's full-details view shows has changed.
+ *
+ * Each change bumps medical_profile.details_version (the ETag of /api/residents/full/{id}) in the
+ * writer's transaction and drops the resident's ResidentDetailsCache snapshot. Writes that change
+ * an inventory item do this for every resident with a medication on that item.
+ */
+@Service
+public class ResidentChangeTracker {
+
+    private final MedicalProfileRepository medicalProfileRepository;
+    private final MedicationRepository medicationRepository;
+    private final ResidentDetailsCache residentDetailsCache;
+
+    public ResidentChangeTracker(MedicalProfileRepository medicalProfileRepository,
+                                 MedicationRepository medicationRepository,
+                                 ResidentDetailsCache residentDetailsCache) {
+        this.medicalProfileRepository = medicalProfileRepository;
+        this.medicationRepository = medicationRepository;
+        this.residentDetailsCache = residentDetailsCache;
+    }
+
+    @Transactional
+    public void residentChanged(Long residentId) {
+        if (residentId == null) return;
+        medicalProfileRepository.bumpDetailsVersions(List.of(residentId));
+        residentDetailsCache.invalidate(residentId);
+    }
+
+    // call before deleting the item, while medications still point at it
+    @Transactional
+    public void inventoryItemChanged(Long itemId) {
+        if (itemId == null) return;
+        List<Long> residentIds = medicationRepository.findResidentIdsByInventoryItem(itemId);
+        if (residentIds.isEmpty()) return;
+        medicalProfileRepository.bumpDetailsVersions(residentIds);
+        residentIds.forEach(residentDetailsCache::invalidate);
+    }
+}
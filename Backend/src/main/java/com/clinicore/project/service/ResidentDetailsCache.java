@@ -0,0 +1,109 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.ResidentFullDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process snapshot of ResidentFullDTO per resident, so /api/residents/full doesn't rerun the full
+ * medical-profile join on every dashboard load.
+ *
+ * Every write that changes what a resident's DTO shows calls invalidate(residentId) through
+ * ResidentChangeTracker — right away and again after commit, so a reader can't re-cache the old rows
+ * between the two. A load only goes into the cache if nothing was invalidated while it ran (generation
+ * check); otherwise it's served once and dropped. Entries also expire after ttl-seconds as a backstop
+ * for changes made outside the app.
+ *
+ * Cached DTOs are shared between requests: callers must not modify them.
+ * Reported as cache.gets{cache=residentFull,result=hit|miss} and cache.size{cache=residentFull}.
+ */
+@Service
+public class ResidentDetailsCache {
+
+    private static final String CACHE_NAME = "residentFull";
+
+    private final long ttlMillis;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    // bumped by every invalidation; loads that started before a bump don't get cached
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    private record Entry(ResidentFullDTO dto, long loadedAt) {
+    }
+
+    public ResidentDetailsCache(@Value("${residents.cache.ttl-seconds:300}") long ttlSeconds,
+                                MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("Resident detail lookups served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("Resident detail lookups that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", entries, ConcurrentHashMap::size).tag("cache", CACHE_NAME)
+                .description("Residents with a cached snapshot")
+                .register(meterRegistry);
+    }
+
+    // call before loading from the database, pass the value to put
+    public long generation() {
+        return generation.get();
+    }
+
+    // null on a miss or an expired entry; counts the lookup
+    public ResidentFullDTO get(Long residentId) {
+        Entry entry = entries.get(residentId);
+        if (entry == null || System.currentTimeMillis() - entry.loadedAt() > ttlMillis) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.dto();
+    }
+
+    public void put(Long residentId, ResidentFullDTO dto, long loadedAtGeneration) {
+        if (residentId == null || dto == null || generation.get() != loadedAtGeneration) return;
+        entries.put(residentId, new Entry(dto, System.currentTimeMillis()));
+        // an invalidation that slipped in between the check and the put wins
+        if (generation.get() != loadedAtGeneration) {
+            entries.remove(residentId);
+        }
+    }
+
+    // only the given ids stay; residents that no longer exist are dropped
+    public void retainOnly(Collection<Long> residentIds) {
+        entries.keySet().retainAll(residentIds);
+    }
+
+    public void invalidate(Long residentId) {
+        if (residentId == null) return;
+        evict(residentId);
+        afterCommit(() -> evict(residentId));
+    }
+
+    private void evict(Long residentId) {
+        generation.incrementAndGet();
+        entries.remove(residentId);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
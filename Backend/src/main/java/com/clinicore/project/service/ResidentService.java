@@ -2,22 +2,47 @@ package com.clinicore.project.service;
 
 import com.clinicore.project.dto.MedicationInventoryDTO;
 import com.clinicore.project.dto.ResidentFullDTO;
+import com.clinicore.project.dto.ResidentPageDTO;
 import com.clinicore.project.entity.*;
 import com.clinicore.project.repository.*;
 import com.clinicore.project.util.MedicationScheduleUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class ResidentService {
 
+    // residents per medication IN-list query
+    private static final int MEDICATION_BATCH_SIZE = 1000;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // overdue is filtered after loading: residents read per round, and at most this many per request
+    // before the page is returned short with a cursor to carry on from
+    private static final int OVERDUE_SCAN_BATCH = 200;
+    private static final int MAX_SCANNED_PER_QUERY = 2000;
+
+    // top-level ResidentFullDTO fields the query API can return (?fields=), in response order
+    private static final List<String> RESIDENT_FIELDS = List.of(
+            "id", "email", "firstName", "lastName", "gender", "birthday", "contactNumber",
+            "emergencyContactName", "emergencyContactNumber", "residentNotes", "assignedCaregivers",
+            "medicalProfile", "medicalServices", "capability", "medicalRecord", "medications");
+
     @Autowired
     private UserProfileRepository userProfileRepository;
 
@@ -42,6 +67,15 @@ public class ResidentService {
     @Autowired
     private ResidentCaregiverRepository residentCaregiverRepository;
 
+    @Autowired
+    private ResidentDetailsCache residentDetailsCache;
+
+    @Autowired
+    private ResidentChangeTracker residentChangeTracker;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * Get all residents with only basic info (id, firstName, lastName)
      * used for list views where full medical data is not needed
@@ -68,11 +102,13 @@ public class ResidentService {
     public List<Map<String, Object>> getAllResidentsWithMedicationSummary() {
         List<UserProfile> residentProfiles = userProfileRepository.findByRole(UserProfile.Role.RESIDENT);
 
-        // batch-load all medications with medical profiles in one query (avoids N+1 on getMedicalProfile())
-        List<Medication> allMedications = medicationRepository.findAllWithMedicalProfile();
-        Map<Long, List<Medication>> medsByProfile = allMedications.stream()
-                .filter(m -> m.getMedicalProfile() != null)
-                .collect(Collectors.groupingBy(m -> m.getMedicalProfile().getResidentId()));
+        // counts per resident and status, grouped in the database (a few rows per resident)
+        Map<Long, Map<String, Integer>> countsByResident = new HashMap<>();
+        for (MedicationRepository.IntakeStatusCount row : medicationRepository.countByResidentAndIntakeStatus()) {
+            String status = row.getIntakeStatus() != null ? row.getIntakeStatus().name() : "PENDING";
+            countsByResident.computeIfAbsent(row.getResidentId(), id -> new HashMap<>())
+                    .merge(status, row.getTotal().intValue(), Integer::sum);
+        }
 
         List<Map<String, Object>> result = new ArrayList<>();
         for (UserProfile p : residentProfiles) {
@@ -81,18 +117,13 @@ public class ResidentService {
             m.put("firstName", p.getFirstName());
             m.put("lastName", p.getLastName());
 
-            // count medication statuses from pre-loaded data
+            // same keys and order for every resident, zero when a status has no medications
             Map<String, Integer> counts = new java.util.LinkedHashMap<>();
             counts.put("ADMINISTERED", 0);
             counts.put("PENDING", 0);
             counts.put("MISSED", 0);
             counts.put("WITHHELD", 0);
-
-            List<Medication> residentMeds = medsByProfile.getOrDefault(p.getId(), List.of());
-            for (Medication med : residentMeds) {
-                String status = med.getIntakeStatus() != null ? med.getIntakeStatus().name() : "PENDING";
-                counts.merge(status, 1, Integer::sum);
-            }
+            countsByResident.getOrDefault(p.getId(), Map.of()).forEach(counts::put);
 
             m.put("medicationCounts", counts);
             result.add(m);
@@ -104,7 +135,7 @@ public class ResidentService {
      * Get all residents with their full details
      * this includes user profile, resident info, medical profile, services, capability, records, and medications
      *
-     * Uses batch loading: ~5 queries total regardless of resident count.
+     * Uses batch loading: 7 queries for up to MEDICATION_BATCH_SIZE residents (one more medication query per extra chunk).
      * Without this, it was N+1: ~7 queries PER resident (70+ for 10 residents).
      */
     @Transactional(readOnly = true)
@@ -112,36 +143,58 @@ public class ResidentService {
         // Query 1: all resident user profiles
         List<UserProfile> residentProfiles = userProfileRepository.findByRole(UserProfile.Role.RESIDENT);
 
+        // every resident cached → done, no further queries
+        List<ResidentFullDTO> cached = new ArrayList<>(residentProfiles.size());
+        for (UserProfile userProfile : residentProfiles) {
+            ResidentFullDTO dto = residentDetailsCache.get(userProfile.getId());
+            if (dto == null) break;
+            cached.add(dto);
+        }
+        if (cached.size() == residentProfiles.size()) {
+            return cached.stream().map(this::withCurrentOverdue).collect(Collectors.toList());
+        }
+
+        // any miss reloads everyone in one batch and refills the cache
+        long cacheGeneration = residentDetailsCache.generation();
+
         // Query 2: all Resident entities (emergency contact, notes) — loaded separately since
         // inverse @OneToOne was removed from UserProfile to prevent Hibernate lazy-load queries
         Map<Long, Resident> residentsById = residentGeneralRepository.findAll().stream()
                 .collect(Collectors.toMap(Resident::getId, r -> r));
 
-        // Query 3: all medical profiles with capability, services, record, medications, and inventory (one JOIN FETCH query)
-        Map<Long, MedicalProfile> profilesByResident = medicalProfileRepository.findAllWithFullDetails().stream()
+        // Query 3: all medical profiles with capability, services, record (one row per profile)
+        Map<Long, MedicalProfile> profilesByResident = medicalProfileRepository.findAllWithProfileDetails().stream()
                 .collect(Collectors.toMap(MedicalProfile::getResidentId, p -> p));
 
-        // Query 4: all allergies, grouped by resident
+        // Query 4: medications with inventory, one IN-list query per chunk of residents
+        Map<Long, List<Medication>> medicationsByResident = loadMedicationsByResident(profilesByResident.keySet());
+
+        // Query 5: all allergies, grouped by resident
         Map<Long, List<Allergy>> allergiesByResident = allergyRepository.findAll().stream()
                 .collect(Collectors.groupingBy(Allergy::getResidentId));
 
-        // Query 5: all diagnoses, grouped by resident
+        // Query 6: all diagnoses, grouped by resident
         Map<Long, List<Diagnosis>> diagnosesByResident = diagnosisRepository.findAll().stream()
                 .collect(Collectors.groupingBy(Diagnosis::getResidentId));
 
-        // Query 6: all caregiver assignments with profiles pre-loaded, grouped by resident
+        // Query 7: all caregiver assignments with profiles pre-loaded, grouped by resident
         Map<Long, List<ResidentCaregiver>> caregiversByResident = residentCaregiverRepository.findAllWithProfiles().stream()
                 .collect(Collectors.groupingBy(a -> a.getResident().getUserProfile().getId()));
 
         // map each profile using pre-loaded data (zero additional queries)
-        return residentProfiles.stream()
+        List<ResidentFullDTO> result = residentProfiles.stream()
                 .map(userProfile -> mapToResidentFullDTOBatch(userProfile,
                         residentsById.get(userProfile.getId()),
                         profilesByResident.get(userProfile.getId()),
+                        medicationsByResident.getOrDefault(userProfile.getId(), List.of()),
                         allergiesByResident.getOrDefault(userProfile.getId(), List.of()),
                         diagnosesByResident.getOrDefault(userProfile.getId(), List.of()),
                         caregiversByResident.getOrDefault(userProfile.getId(), List.of())))
                 .collect(Collectors.toList());
+
+        result.forEach(dto -> residentDetailsCache.put(dto.getId(), dto, cacheGeneration));
+        residentDetailsCache.retainOnly(result.stream().map(ResidentFullDTO::getId).collect(Collectors.toSet()));
+        return result;
     }
 
     /**
@@ -149,6 +202,12 @@ public class ResidentService {
      */
     @Transactional(readOnly = true)
     public ResidentFullDTO getResidentFullDetailsById(Long residentId) {
+        ResidentFullDTO cached = residentDetailsCache.get(residentId);
+        if (cached != null) {
+            return withCurrentOverdue(cached);
+        }
+        long cacheGeneration = residentDetailsCache.generation();
+
         // Query 1: user profile
         UserProfile userProfile = userProfileRepository.findById(residentId)
                 .orElseThrow(() -> new RuntimeException("Resident not found with id: " + residentId));
@@ -160,19 +219,307 @@ public class ResidentService {
         // Query 2: resident entity (emergency contact, notes)
         Resident resident = residentGeneralRepository.findById(residentId).orElse(null);
 
-        // Query 3: medical profile with all children + medications + inventory (one JOIN FETCH)
-        MedicalProfile medicalProfile = medicalProfileRepository.findByResidentIdWithFullDetails(residentId).orElse(null);
+        // Query 3: medical profile with capability, services, record (one JOIN FETCH)
+        MedicalProfile medicalProfile = medicalProfileRepository.findByResidentIdWithProfileDetails(residentId).orElse(null);
 
-        // Query 4: allergies for this resident
+        // Query 4: medications with inventory
+        List<Medication> medications = medicalProfile != null
+                ? medicationRepository.findByResidentIdsWithInventory(List.of(residentId))
+                : List.of();
+
+        // Query 5: allergies for this resident
         List<Allergy> allergies = allergyRepository.findByResidentId(residentId);
 
-        // Query 5: diagnoses for this resident
+        // Query 6: diagnoses for this resident
         List<Diagnosis> diagnoses = diagnosisRepository.findByResidentId(residentId);
 
-        // Query 6: caregiver assignments with profiles pre-loaded (one JOIN FETCH)
+        // Query 7: caregiver assignments with profiles pre-loaded (one JOIN FETCH)
         List<ResidentCaregiver> assignments = residentCaregiverRepository.findByResidentIdWithProfiles(residentId);
 
-        return mapToResidentFullDTOBatch(userProfile, resident, medicalProfile, allergies, diagnoses, assignments);
+        ResidentFullDTO dto = mapToResidentFullDTOBatch(userProfile, resident, medicalProfile, medications, allergies, diagnoses, assignments);
+        residentDetailsCache.put(residentId, dto, cacheGeneration);
+        return dto;
+    }
+
+    /**
+     * One keyset page of residents with full details: up to limit residents with user_profile id > afterId, in id order.
+     * Pass the last id of a page to get the next one. Used to stream /api/residents/full without building the whole list.
+     *
+     * Cached snapshots are reused; the rest of the page is loaded with one IN-list query per table.
+     * The persistence context is cleared afterwards, so walking every page doesn't pile up entities
+     * (with open-in-view the same EntityManager would otherwise live for the whole response).
+     */
+    @Transactional(readOnly = true)
+    public List<ResidentFullDTO> getResidentsWithFullDetailsPage(Long afterId, int limit) {
+        List<UserProfile> residentProfiles = userProfileRepository.findByRoleAndIdGreaterThanOrderByIdAsc(
+                UserProfile.Role.RESIDENT, afterId != null ? afterId : 0L, Limit.of(limit));
+
+        List<ResidentFullDTO> page = loadResidentDetails(residentProfiles, RESIDENT_FIELDS);
+        entityManager.clear();
+        return page;
+    }
+
+    /**
+     * Resident query API: one keyset page of residents (id > after, in id order) matching every given filter,
+     * with only the requested top-level fields. null filters / fields mean "any" / "all".
+     *
+     * caregiverId, mobilityStatus (Capability.MobilityStatus name) and dnrPolst are filtered in SQL.
+     * overdue needs each medication's next dose, which is computed from its frequency text, so it's
+     * applied after loading — the scan keeps going until the page is full, there are no more residents,
+     * or MAX_SCANNED_PER_QUERY residents have been checked. In the last case the page can come back short
+     * (even empty) with hasMore and a nextCursor of the last resident checked, so a rare match doesn't
+     * turn one request into a walk over every resident.
+     * Tables behind fields that weren't asked for aren't queried at all.
+     */
+    @Transactional(readOnly = true)
+    public ResidentPageDTO queryResidents(Long after, Integer limit, Long caregiverId, String mobilityStatus,
+                                          Boolean dnrPolst, Boolean overdue, Collection<String> fields) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<String> selected = selectFields(fields);
+        Capability.MobilityStatus mobility = parseMobilityStatus(mobilityStatus);
+
+        // medications are needed to evaluate overdue even when they aren't returned
+        List<String> loaded = selected;
+        if (overdue != null && !selected.contains("medications")) {
+            loaded = new ArrayList<>(selected);
+            loaded.add("medications");
+        }
+
+        // fetch one extra match to know if there's another page without a COUNT
+        int batch = overdue == null ? pageSize + 1 : Math.max(pageSize + 1, OVERDUE_SCAN_BATCH);
+        List<ResidentFullDTO> matches = new ArrayList<>();
+        long cursor = after != null ? after : 0L;
+        int scanned = 0;
+        boolean scanCapped = false;
+        while (matches.size() <= pageSize) {
+            if (scanned >= MAX_SCANNED_PER_QUERY) {
+                scanCapped = true;
+                break;
+            }
+            List<UserProfile> candidates = userProfileRepository.findResidentsMatching(
+                    cursor, caregiverId, mobility, dnrPolst, Limit.of(batch));
+            if (candidates.isEmpty()) break;
+            cursor = candidates.get(candidates.size() - 1).getId();
+            scanned += candidates.size();
+
+            for (ResidentFullDTO dto : loadResidentDetails(candidates, loaded)) {
+                if (overdue == null || overdue == hasOverdueMedication(dto)) {
+                    matches.add(dto);
+                }
+            }
+            // the DTOs are built; don't carry this round's entities into the next one
+            entityManager.clear();
+            if (candidates.size() < batch) break;
+        }
+
+        boolean hasMore = matches.size() > pageSize || scanCapped;
+        Long nextCursor = null;
+        if (matches.size() > pageSize) {
+            matches = matches.subList(0, pageSize);
+            nextCursor = matches.get(matches.size() - 1).getId();
+        } else if (scanCapped) {
+            // everything up to the cursor has been checked, matching or not
+            nextCursor = cursor;
+        }
+        List<Map<String, Object>> residents = matches.stream()
+                .map(dto -> pickFields(dto, selected))
+                .collect(Collectors.toList());
+        return new ResidentPageDTO(residents, nextCursor, hasMore);
+    }
+
+    /**
+     * Details for the given residents, in the same order, filling only the given fields.
+     * Cached snapshots are reused; the rest are loaded with one IN-list query per table those fields need.
+     * Only complete DTOs go into the cache.
+     */
+    private List<ResidentFullDTO> loadResidentDetails(List<UserProfile> residentProfiles, List<String> fields) {
+        Map<Long, ResidentFullDTO> dtosById = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (UserProfile userProfile : residentProfiles) {
+            ResidentFullDTO dto = residentDetailsCache.get(userProfile.getId());
+            if (dto != null) {
+                dtosById.put(userProfile.getId(), withCurrentOverdue(dto));
+            } else {
+                missing.add(userProfile.getId());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            boolean complete = fields.containsAll(RESIDENT_FIELDS);
+            boolean needCaregivers = fields.contains("assignedCaregivers");
+            boolean needResident = needCaregivers || fields.contains("emergencyContactName")
+                    || fields.contains("emergencyContactNumber") || fields.contains("residentNotes");
+            boolean needMedications = fields.contains("medications");
+            boolean needRecord = fields.contains("medicalRecord");
+            boolean needProfile = needMedications || needRecord || fields.contains("medicalProfile")
+                    || fields.contains("medicalServices") || fields.contains("capability");
+
+            long cacheGeneration = residentDetailsCache.generation();
+
+            Map<Long, Resident> residentsById = needResident
+                    ? residentGeneralRepository.findAllById(missing).stream().collect(Collectors.toMap(Resident::getId, r -> r))
+                    : Map.of();
+            Map<Long, MedicalProfile> profilesByResident = needProfile
+                    ? medicalProfileRepository.findByResidentIdsWithProfileDetails(missing).stream()
+                            .collect(Collectors.toMap(MedicalProfile::getResidentId, p -> p))
+                    : Map.of();
+            Map<Long, List<Medication>> medicationsByResident = needMedications
+                    ? loadMedicationsByResident(profilesByResident.keySet())
+                    : Map.of();
+            Map<Long, List<Allergy>> allergiesByResident = needRecord
+                    ? allergyRepository.findByResidentIdIn(missing).stream().collect(Collectors.groupingBy(Allergy::getResidentId))
+                    : Map.of();
+            Map<Long, List<Diagnosis>> diagnosesByResident = needRecord
+                    ? diagnosisRepository.findByResidentIdIn(missing).stream().collect(Collectors.groupingBy(Diagnosis::getResidentId))
+                    : Map.of();
+            Map<Long, List<ResidentCaregiver>> caregiversByResident = needCaregivers
+                    ? residentCaregiverRepository.findByResidentIdsWithProfiles(missing).stream()
+                            .collect(Collectors.groupingBy(a -> a.getResident().getUserProfile().getId()))
+                    : Map.of();
+
+            for (UserProfile userProfile : residentProfiles) {
+                if (dtosById.containsKey(userProfile.getId())) continue;
+                ResidentFullDTO dto = mapToResidentFullDTOBatch(userProfile,
+                        residentsById.get(userProfile.getId()),
+                        profilesByResident.get(userProfile.getId()),
+                        medicationsByResident.getOrDefault(userProfile.getId(), List.of()),
+                        allergiesByResident.getOrDefault(userProfile.getId(), List.of()),
+                        diagnosesByResident.getOrDefault(userProfile.getId(), List.of()),
+                        caregiversByResident.getOrDefault(userProfile.getId(), List.of()));
+                if (complete) {
+                    residentDetailsCache.put(dto.getId(), dto, cacheGeneration);
+                }
+                dtosById.put(dto.getId(), dto);
+            }
+        }
+
+        return residentProfiles.stream().map(userProfile -> dtosById.get(userProfile.getId())).collect(Collectors.toList());
+    }
+
+    // requested fields in response order; id always included, null/empty = everything
+    private List<String> selectFields(Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) return RESIDENT_FIELDS;
+        Set<String> requested = new HashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (name.isEmpty()) continue;
+            if (!RESIDENT_FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + ". Allowed: " + String.join(",", RESIDENT_FIELDS));
+            }
+            requested.add(name);
+        }
+        requested.add("id");
+        return RESIDENT_FIELDS.stream().filter(requested::contains).collect(Collectors.toList());
+    }
+
+    private Capability.MobilityStatus parseMobilityStatus(String mobilityStatus) {
+        if (mobilityStatus == null || mobilityStatus.isBlank()) return null;
+        try {
+            return Capability.MobilityStatus.valueOf(mobilityStatus.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid mobility status: " + mobilityStatus);
+        }
+    }
+
+    private boolean hasOverdueMedication(ResidentFullDTO dto) {
+        return dto.getMedications() != null
+                && dto.getMedications().stream().anyMatch(med -> Boolean.TRUE.equals(med.getIsOverdue()));
+    }
+
+    private Map<String, Object> pickFields(ResidentFullDTO dto, List<String> fields) {
+        Map<String, Object> m = new java.util.LinkedHashMap<>();
+        for (String field : fields) {
+            m.put(field, switch (field) {
+                case "id" -> dto.getId();
+                case "email" -> dto.getEmail();
+                case "firstName" -> dto.getFirstName();
+                case "lastName" -> dto.getLastName();
+                case "gender" -> dto.getGender();
+                case "birthday" -> dto.getBirthday();
+                case "contactNumber" -> dto.getContactNumber();
+                case "emergencyContactName" -> dto.getEmergencyContactName();
+                case "emergencyContactNumber" -> dto.getEmergencyContactNumber();
+                case "residentNotes" -> dto.getResidentNotes();
+                case "assignedCaregivers" -> dto.getAssignedCaregivers();
+                case "medicalProfile" -> dto.getMedicalProfile();
+                case "medicalServices" -> dto.getMedicalServices();
+                case "capability" -> dto.getCapability();
+                case "medicalRecord" -> dto.getMedicalRecord();
+                case "medications" -> dto.getMedications();
+                default -> throw new IllegalArgumentException("Unknown field: " + field);
+            });
+        }
+        return m;
+    }
+
+    /**
+     * medications per resident, one IN-list query per MEDICATION_BATCH_SIZE residents
+     * (keeps the statement and its bind list bounded at large census)
+     */
+    private Map<Long, List<Medication>> loadMedicationsByResident(Collection<Long> residentIds) {
+        List<Long> ids = new ArrayList<>(residentIds);
+        Map<Long, List<Medication>> byResident = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += MEDICATION_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MEDICATION_BATCH_SIZE, ids.size()));
+            for (Medication medication : medicationRepository.findByResidentIdsWithInventory(chunk)) {
+                byResident.computeIfAbsent(medication.getMedicalProfile().getResidentId(), id -> new ArrayList<>())
+                        .add(medication);
+            }
+        }
+        return byResident;
+    }
+
+    /**
+     * Details version of a resident (ETag of /full/{id}), one primary key lookup; null without a medical profile.
+     */
+    @Transactional(readOnly = true)
+    public Long getResidentDetailsVersion(Long residentId) {
+        return medicalProfileRepository.findDetailsVersion(residentId).orElse(null);
+    }
+
+    /**
+     * overdue depends on the clock, not the data — recomputed on every cache hit so a snapshot never shows a stale flag.
+     * The cached DTO is shared between requests, so this returns a copy with fresh medication entries
+     * and leaves the snapshot itself alone; everything else is shared as-is.
+     */
+    private ResidentFullDTO withCurrentOverdue(ResidentFullDTO cached) {
+        List<ResidentFullDTO.MedicationDTO> medications = cached.getMedications() == null ? null
+                : cached.getMedications().stream().map(this::withCurrentOverdue).collect(Collectors.toList());
+        return new ResidentFullDTO(
+                cached.getId(),
+                cached.getEmail(),
+                cached.getFirstName(),
+                cached.getLastName(),
+                cached.getGender(),
+                cached.getBirthday(),
+                cached.getContactNumber(),
+                cached.getEmergencyContactName(),
+                cached.getEmergencyContactNumber(),
+                cached.getResidentNotes(),
+                cached.getAssignedCaregivers(),
+                cached.getMedicalProfile(),
+                cached.getMedicalServices(),
+                cached.getCapability(),
+                cached.getMedicalRecord(),
+                medications);
+    }
+
+    private ResidentFullDTO.MedicationDTO withCurrentOverdue(ResidentFullDTO.MedicationDTO med) {
+        Boolean overdue = med.getNextDoseTime() != null
+                ? MedicationScheduleUtil.isOverdue(LocalDateTime.parse(med.getNextDoseTime()))
+                : med.getIsOverdue();
+        return new ResidentFullDTO.MedicationDTO(
+                med.getId(),
+                med.getMedicationInventoryId(),
+                med.getName(),
+                med.getDosage(),
+                med.getSchedule(),
+                med.getInventoryQuantity(),
+                med.getNotes(),
+                med.getIntakeStatus(),
+                med.getLastAdministeredAt(),
+                med.getNextDoseTime(),
+                overdue);
     }
 
     /**
@@ -183,6 +530,7 @@ public class ResidentService {
             UserProfile userProfile,
             Resident resident,
             MedicalProfile medicalProfile,
+            List<Medication> medications,
             List<Allergy> allergies,
             List<Diagnosis> diagnoses,
             List<ResidentCaregiver> assignments) {
@@ -258,8 +606,7 @@ public class ResidentService {
 
             dto.setMedicalRecord(recordDTO);
 
-            List<Medication> medications = medicalProfile.getMedications();
-            if (medications != null && !medications.isEmpty()) {
+            if (!medications.isEmpty()) {
                 dto.setMedications(medications.stream().map(this::mapMedicationToDTO).collect(Collectors.toList()));
             } else {
                 dto.setMedications(new ArrayList<>());
@@ -353,6 +700,7 @@ public class ResidentService {
         medication.setNotes(medicationDTO.getNotes());
         medication.setIntakeStatus(Medication.IntakeStatus.PENDING);
 
+        residentChangeTracker.residentChanged(residentId);
         return mapMedicationToDTO(medicationRepository.save(medication));
     }
 
@@ -382,10 +730,13 @@ public class ResidentService {
                 Item item = medication.getMedicationInventory().getItem();
                 if (item.getQuantity() > 0) {
                     item.setQuantity(item.getQuantity() - 1);
+                    // every resident on this inventory item shows its quantity
+                    residentChangeTracker.inventoryItemChanged(item.getId());
                 }
             }
         }
 
+        residentChangeTracker.residentChanged(medication.getMedicalProfile().getResidentId());
         return mapMedicationToDTO(medicationRepository.save(medication));
     }
 
@@ -460,6 +811,7 @@ public class ResidentService {
         allergy.setAllergyType(allergyDTO.getAllergyType());
         allergy.setSeverity(allergyDTO.getSeverity());
         allergy.setNotes(allergyDTO.getNotes());
+        residentChangeTracker.residentChanged(residentId);
         return mapAllergyToDTO(allergyRepository.save(allergy));
     }
 
@@ -468,6 +820,8 @@ public class ResidentService {
      */
     @Transactional
     public void deleteAllergy(Long allergyId) {
+        allergyRepository.findById(allergyId)
+                .ifPresent(allergy -> residentChangeTracker.residentChanged(allergy.getResidentId()));
         allergyRepository.deleteById(allergyId);
     }
 
@@ -480,6 +834,7 @@ public class ResidentService {
         diagnosis.setResidentId(residentId);
         diagnosis.setDiagnosis(diagnosisDTO.getDiagnosis());
         diagnosis.setNotes(diagnosisDTO.getNotes());
+        residentChangeTracker.residentChanged(residentId);
         return mapDiagnosisToDTO(diagnosisRepository.save(diagnosis));
     }
 
@@ -488,6 +843,8 @@ public class ResidentService {
      */
     @Transactional
     public void deleteDiagnosis(Long diagnosisId) {
+        diagnosisRepository.findById(diagnosisId)
+                .ifPresent(diagnosis -> residentChangeTracker.residentChanged(diagnosis.getResidentId()));
         diagnosisRepository.deleteById(diagnosisId);
     }
 
@@ -537,6 +894,7 @@ public class ResidentService {
 
         userProfileRepository.save(userProfile);
         residentGeneralRepository.save(resident);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     /**
@@ -567,6 +925,7 @@ public class ResidentService {
         }
 
         medicalProfileRepository.save(medicalProfile);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     /**
@@ -616,6 +975,7 @@ public class ResidentService {
         }
 
         medicalProfileRepository.save(medicalProfile);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     /**
@@ -659,6 +1019,7 @@ public class ResidentService {
         }
 
         medicalProfileRepository.save(medicalProfile);
+        residentChangeTracker.residentChanged(residentId);
     }
 
     /**
@@ -666,6 +1027,8 @@ public class ResidentService {
      */
     @Transactional
     public void deleteMedication(Long medicationId) {
+        medicationRepository.findById(medicationId)
+                .ifPresent(medication -> residentChangeTracker.residentChanged(medication.getMedicalProfile().getResidentId()));
         medicationRepository.deleteById(medicationId);
     }
 
@@ -688,5 +1051,6 @@ public class ResidentService {
         }
 
         medicationRepository.save(medication);
+        residentChangeTracker.residentChanged(medication.getMedicalProfile().getResidentId());
     }
 }
@@ -0,0 +1,196 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.repository.MessagesRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Builds small JPEG previews for IMAGE attachments so conversation views don't pull the full file.
+ * Runs on its own small pool once the message has committed — decoding is memory-heavy, so
+ * concurrency is capped and overflow is dropped rather than queued forever. The preview goes into the
+ * AttachmentStore like any other content and the message row just gets its key.
+ * A failure only means no thumbnail — clients fall back to the full attachment.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    // refuse to decode anything bigger than this (decompression bombs); 10MB uploads fit comfortably
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private final MessagesRepository messagesRepository;
+    private final AttachmentStore attachmentStore;
+    private final AttachmentReferenceService attachmentReferenceService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxDimension;
+    private final float quality;
+    private final ThreadPoolTaskExecutor executor;
+
+    public ThumbnailService(MessagesRepository messagesRepository,
+                            AttachmentStore attachmentStore,
+                            AttachmentReferenceService attachmentReferenceService,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${attachments.thumbnail.max-dimension:320}") int maxDimension,
+                            @Value("${attachments.thumbnail.quality:0.75}") float quality,
+                            @Value("${attachments.thumbnail.threads:2}") int threads) {
+        this.messagesRepository = messagesRepository;
+        this.attachmentStore = attachmentStore;
+        this.attachmentReferenceService = attachmentReferenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.setRejectedExecutionHandler((task, pool) ->
+                log.warn("Thumbnail queue full, skipping a preview"));
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // call inside the send transaction — generation starts only if it commits
+    public void generateAfterCommit(Long messageId, String attachmentKey) {
+        if (messageId == null || attachmentKey == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(() -> generate(messageId, attachmentKey));
+                }
+            });
+        } else {
+            executor.execute(() -> generate(messageId, attachmentKey));
+        }
+    }
+
+    void generate(Long messageId, String attachmentKey) {
+        try {
+            Resource source = attachmentStore.load(attachmentKey);
+            if (source == null) return;
+
+            byte[] thumbnail;
+            try (InputStream in = source.getInputStream()) {
+                thumbnail = createThumbnail(in);
+            }
+            if (thumbnail == null) {
+                log.debug("No thumbnail for message {}: unreadable or oversized image", messageId);
+                return;
+            }
+
+            AttachmentStore.StoredAttachment stored = attachmentStore.store(new ByteArrayInputStream(thumbnail));
+            transactionTemplate.executeWithoutResult(status -> {
+                attachmentReferenceService.acquire(stored);
+                // kept only if the row took it (not already set, not archived meanwhile)
+                if (messagesRepository.setThumbnailKey(messageId, stored.key()) == 0) {
+                    attachmentReferenceService.release(stored.key());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Thumbnail generation failed for message {}: {}", messageId, e.getMessage());
+        }
+    }
+
+    /**
+     * Scales an image down to fit maxDimension and encodes it as JPEG.
+     * Large sources are subsampled while decoding, so a 4000px photo never sits fully in memory.
+     * Returns null if the content isn't a readable image or is too large to decode.
+     */
+    byte[] createThumbnail(InputStream content) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(content)) {
+            if (iis == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_SOURCE_PIXELS) return null;
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                // keep ~2x the target size so the final scale step still smooths edges
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        return encodeJpeg(scale(image));
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * factor));
+        int targetHeight = Math.max(1, (int) Math.round(height * factor));
+
+        // JPEG has no alpha — draw onto white so transparent PNGs don't turn black
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,237 @@
+package com.clinicore.project.service.impl;
+
+import com.clinicore.project.service.AttachmentStore;
+import com.clinicore.project.service.EncryptionService;
+import com.clinicore.project.service.HashService_SHA256;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * AttachmentStore on the local filesystem.
+ * Files live at {root}/{first 2 hex}/{next 2 hex}/{sha256} so no directory gets too large.
+ * Uploads are written to {root}/tmp first and moved into place once the hash is known.
+ * Content is encrypted at rest with EncryptionService's streaming format; the key is the hash
+ * of the plaintext, so dedup still works. Files from before encryption are served as-is
+ * until encryptPlaintextEntries rewrites them; it walks the store once in key order, keeping its
+ * place in {root}/encrypt-cursor.
+ */
+@Service
+public class LocalFileAttachmentStore implements AttachmentStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern SHARD_PATTERN = Pattern.compile("[0-9a-f]{2}");
+
+    // encryptPlaintextEntries' progress: last key it checked, or CURSOR_DONE once it has been through them all
+    private static final String CURSOR_FILE = "encrypt-cursor";
+    private static final String CURSOR_DONE = "done";
+
+    private final Path root;
+    private final Path tmpDir;
+    private final Path cursorFile;
+    private final HashService_SHA256 hashService;
+    private final EncryptionService encryptionService;
+
+    public LocalFileAttachmentStore(@Value("${attachments.storage.path}") String rootPath,
+                                    HashService_SHA256 hashService,
+                                    EncryptionService encryptionService) throws IOException {
+        this.root = Paths.get(rootPath).toAbsolutePath().normalize();
+        this.tmpDir = root.resolve("tmp");
+        this.cursorFile = root.resolve(CURSOR_FILE);
+        this.hashService = hashService;
+        this.encryptionService = encryptionService;
+        Files.createDirectories(tmpDir);
+    }
+
+    @Override
+    public StoredAttachment store(InputStream content) throws IOException {
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            MessageDigest digest = hashService.newDigest();
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest);
+                 OutputStream out = encryptionService.encryptingOutputStream(Files.newOutputStream(tmp))) {
+                size = in.transferTo(out);
+            }
+
+            String key = hashService.toHex(digest.digest());
+            Path target = pathFor(key);
+            if (Files.exists(target)) {
+                // already stored — same hash means same bytes
+                return new StoredAttachment(key, size);
+            }
+
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // another upload of the same content won the race
+            }
+            return new StoredAttachment(key, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Resource load(String key) throws IOException {
+        Path path = pathFor(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        return isEncrypted(path) ? new DecryptingFileResource(path) : new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(pathFor(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathFor(key));
+    }
+
+    @Override
+    public int encryptPlaintextEntries(int limit) throws IOException {
+        String cursor = readCursor();
+        if (CURSOR_DONE.equals(cursor)) {
+            return 0;
+        }
+
+        // walk in key order from where the last call stopped. store() only ever writes encrypted files,
+        // so nothing behind the cursor can turn plaintext again and each file's header is read once overall
+        int encrypted = 0;
+        try {
+            for (Path first : keyOrderedChildren(root, "", SHARD_PATTERN, cursor)) {
+                String firstPrefix = first.getFileName().toString();
+                for (Path second : keyOrderedChildren(first, firstPrefix, SHARD_PATTERN, cursor)) {
+                    for (Path path : keyOrderedChildren(second, "", KEY_PATTERN, cursor)) {
+                        if (encrypted == limit) {
+                            return encrypted;
+                        }
+                        if (!isEncrypted(path)) {
+                            encryptInPlace(path);
+                            encrypted++;
+                        }
+                        cursor = path.getFileName().toString();
+                    }
+                }
+            }
+            cursor = CURSOR_DONE;
+            return encrypted;
+        } finally {
+            // also on failure, so the next call retries the file that failed instead of starting over
+            writeCursor(cursor);
+        }
+    }
+
+    private void encryptInPlace(Path path) throws IOException {
+        Path tmp = Files.createTempFile(tmpDir, "encrypt-", ".part");
+        try {
+            try (InputStream in = Files.newInputStream(path);
+                 OutputStream out = encryptionService.encryptingOutputStream(Files.newOutputStream(tmp))) {
+                in.transferTo(out);
+            }
+            // readers holding the old file keep their handle; new readers get the encrypted one
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // entries of dir whose names match, sorted, minus those that sort entirely at or before the cursor
+    private static List<Path> keyOrderedChildren(Path dir, String parentPrefix, Pattern namePattern,
+                                                 String cursor) throws IOException {
+        try (Stream<Path> children = Files.list(dir)) {
+            return children
+                    .filter(p -> namePattern.matcher(p.getFileName().toString()).matches())
+                    .filter(p -> cursor == null || isAfterCursor(parentPrefix + p.getFileName(), cursor))
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    // a shard prefix is still needed if it equals the cursor's prefix; a full key only if it's past the cursor
+    private static boolean isAfterCursor(String keyOrPrefix, String cursor) {
+        int cmp = keyOrPrefix.compareTo(cursor.substring(0, keyOrPrefix.length()));
+        return keyOrPrefix.length() < cursor.length() ? cmp >= 0 : cmp > 0;
+    }
+
+    private String readCursor() throws IOException {
+        if (!Files.isRegularFile(cursorFile)) {
+            return null;
+        }
+        String cursor = Files.readString(cursorFile).trim();
+        return CURSOR_DONE.equals(cursor) || KEY_PATTERN.matcher(cursor).matches() ? cursor : null;
+    }
+
+    private void writeCursor(String cursor) throws IOException {
+        if (cursor == null) {
+            return;
+        }
+        Path tmp = Files.createTempFile(tmpDir, "cursor-", ".part");
+        try {
+            Files.writeString(tmp, cursor);
+            Files.move(tmp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private boolean isEncrypted(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return EncryptionService.isStreamEncrypted(in.readNBytes(EncryptionService.STREAM_HEADER_LENGTH));
+        }
+    }
+
+    // decrypts on every open; length comes from the file size so Range/Content-Length work without reading it
+    private class DecryptingFileResource extends AbstractResource {
+        private final Path path;
+
+        DecryptingFileResource(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return encryptionService.decryptingInputStream(Files.newInputStream(path));
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return EncryptionService.plaintextLength(Files.size(path));
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.isRegularFile(path);
+        }
+
+        @Override
+        public String getDescription() {
+            return "encrypted attachment [" + path.getFileName() + "]";
+        }
+    }
+
+    private Path pathFor(String key) {
+        // keys come from the DB, but never let one escape the store directory
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid attachment key");
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
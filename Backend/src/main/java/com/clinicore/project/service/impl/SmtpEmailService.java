@@ -6,6 +6,9 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Service
 public class SmtpEmailService implements EmailService {
 
@@ -100,4 +103,31 @@ public class SmtpEmailService implements EmailService {
                 """.formatted(resetLink));
         mailSender.send(msg);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void sendUnreadMessagesDigest(String toEmail, String firstName, int totalUnread,
+                                         Map<String, Integer> unreadBySender) {
+        // counts and names only — message content never goes out by email
+        String lines = unreadBySender.entrySet().stream()
+                .map(e -> "  %s: %d".formatted(e.getKey(), e.getValue()))
+                .collect(Collectors.joining("\n"));
+
+        SimpleMailMessage msg = new SimpleMailMessage();
+        msg.setFrom(from);
+        msg.setTo(toEmail);
+        msg.setSubject("CliniCore - You have %d unread message%s".formatted(totalUnread, totalUnread == 1 ? "" : "s"));
+        msg.setText("""
+                Hi %s,
+
+                You have unread messages on CliniCore:
+
+                %s
+
+                Log in to read them:
+                %s
+
+                You won't get another summary until new messages arrive.
+                """.formatted(firstName, lines, frontendUrl));
+        mailSender.send(msg);
+    }
+}
@@ -0,0 +1,82 @@
+package com.clinicore.project.util;
+
+/**
+ * ConversationKey
+ * Packs a one-to-one conversation into a single BIGINT: (smaller user id << 32) | larger user id.
+ * The database stores and indexes this number; the "smaller_larger" string form is only
+ * used at the API boundary (paths, DTOs, websocket events), so existing clients don't change.
+ * The mapping is exact both ways, so no lookup table is needed.
+ */
+public class ConversationKey {
+
+    // each half gets 32 bits; capping at int range keeps the key a positive signed BIGINT
+    private static final long MAX_USER_ID = Integer.MAX_VALUE;
+
+    private ConversationKey() {
+        // utility class — no instantiation
+    }
+
+    /**
+     * Key for the conversation between two users, order doesn't matter.
+     */
+    public static long of(long userId1, long userId2) {
+        long smaller = Math.min(userId1, userId2);
+        long larger = Math.max(userId1, userId2);
+        if (smaller < 0 || larger > MAX_USER_ID) {
+            throw new IllegalArgumentException("User id out of range for a conversation key: " + userId1 + ", " + userId2);
+        }
+        return (smaller << 32) | larger;
+    }
+
+    /**
+     * Parses the API form "smaller_larger". Throws IllegalArgumentException if it isn't one.
+     */
+    public static long parse(String conversationId) {
+        if (conversationId == null) {
+            throw new IllegalArgumentException("Missing conversation id");
+        }
+        int separator = conversationId.indexOf('_');
+        if (separator <= 0 || separator != conversationId.lastIndexOf('_')) {
+            throw new IllegalArgumentException("Invalid conversation id: " + conversationId);
+        }
+        try {
+            long first = Long.parseLong(conversationId.substring(0, separator));
+            long second = Long.parseLong(conversationId.substring(separator + 1));
+            return of(first, second);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid conversation id: " + conversationId);
+        }
+    }
+
+    /**
+     * API form of a key: "smaller_larger".
+     */
+    public static String format(long key) {
+        return firstUserId(key) + "_" + secondUserId(key);
+    }
+
+    // nullable variant for DTO mapping
+    public static String format(Long key) {
+        return key == null ? null : format(key.longValue());
+    }
+
+    public static long firstUserId(long key) {
+        return key >>> 32;
+    }
+
+    public static long secondUserId(long key) {
+        return key & 0xFFFFFFFFL;
+    }
+
+    public static boolean isParticipant(long key, long userId) {
+        return firstUserId(key) == userId || secondUserId(key) == userId;
+    }
+
+    /**
+     * The participant that isn't userId (userId itself for a note-to-self).
+     */
+    public static long otherParticipant(long key, long userId) {
+        long first = firstUserId(key);
+        return first == userId ? secondUserId(key) : first;
+    }
+}
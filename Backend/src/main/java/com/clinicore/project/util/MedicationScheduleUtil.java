@@ -49,7 +49,11 @@ public class MedicationScheduleUtil {
     public static boolean isOverdue(LocalDateTime nextDoseTime) {
         if (nextDoseTime == null) return false;
 
-        LocalDateTime twoHoursAfterDue = nextDoseTime.plusHours(2);
-        return LocalDateTime.now().isAfter(twoHoursAfterDue);
+        return LocalDateTime.now().isAfter(overdueAfter(nextDoseTime));
+    }
+
+    // the moment a dose starts counting as overdue (two hours of grace after it's due)
+    public static LocalDateTime overdueAfter(LocalDateTime nextDoseTime) {
+        return nextDoseTime.plusHours(2);
     }
 }
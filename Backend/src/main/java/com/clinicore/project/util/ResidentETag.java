@@ -0,0 +1,70 @@
+package com.clinicore.project.util;
+
+import com.clinicore.project.dto.ResidentFullDTO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * ResidentETag
+ * ETag of /api/residents/full/{id}: "detailsVersion.stableUntil".
+ * detailsVersion moves on every write to the resident (ResidentChangeTracker). The response also has
+ * isOverdue flags that flip with the clock alone, so stableUntil is when the first medication that
+ * isn't overdue yet becomes overdue (0 = none will). A tag stays current while the version matches and
+ * stableUntil hasn't passed — checking it needs the version lookup and the clock, nothing else.
+ */
+public class ResidentETag {
+
+    private ResidentETag() {
+        // utility class — no instantiation
+    }
+
+    /**
+     * Tag for a response built from this resident at this version (read the version before loading).
+     */
+    public static String of(long detailsVersion, ResidentFullDTO resident) {
+        long stableUntil = 0;
+        if (resident.getMedications() != null) {
+            for (ResidentFullDTO.MedicationDTO med : resident.getMedications()) {
+                if (med.getNextDoseTime() == null || Boolean.TRUE.equals(med.getIsOverdue())) continue;
+                long overdueAt = epochSeconds(MedicationScheduleUtil.overdueAfter(LocalDateTime.parse(med.getNextDoseTime())));
+                if (stableUntil == 0 || overdueAt < stableUntil) {
+                    stableUntil = overdueAt;
+                }
+            }
+        }
+        return "\"" + detailsVersion + "." + stableUntil + "\"";
+    }
+
+    /**
+     * The tag from an If-None-Match header that is still current for this version, or null.
+     * Accepts a comma-separated list and weak (W/) tags.
+     */
+    public static String matching(String ifNoneMatch, long detailsVersion) {
+        if (ifNoneMatch == null) return null;
+        long now = epochSeconds(LocalDateTime.now());
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) continue;
+
+            String[] parts = tag.substring(1, tag.length() - 1).split("\\.");
+            if (parts.length != 2) continue;
+            try {
+                long version = Long.parseLong(parts[0]);
+                long stableUntil = Long.parseLong(parts[1]);
+                if (version == detailsVersion && (stableUntil == 0 || now < stableUntil)) {
+                    return tag;
+                }
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return null;
+    }
+
+    // dose times are LocalDateTime in server time; any fixed offset works as long as both sides use it
+    private static long epochSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
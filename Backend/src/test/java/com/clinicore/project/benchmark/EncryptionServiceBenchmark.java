@@ -0,0 +1,103 @@
+package com.clinicore.project.benchmark;
+
+import com.clinicore.project.service.EncryptionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of decrypting one conversation's worth of messages.
+ *
+ * legacyPerCall  — the old decrypt(): Cipher.getInstance + three array copies per message
+ * perCall        — current decrypt() in a loop (per-thread cipher and buffers)
+ * decryptAll     — batch API (parallel once the batch reaches PARALLEL_THRESHOLD)
+ *
+ * Not run by surefire. To run:
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *        com.clinicore.project.benchmark.EncryptionServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionServiceBenchmark {
+
+    // typical page, long caregiver↔family thread
+    @Param({"50", "1000"})
+    public int messageCount;
+
+    private EncryptionService encryptionService;
+    private SecretKeySpec legacyKey;
+    private List<String> ciphertexts;
+
+    @Setup
+    public void setUp() {
+        byte[] rawKey = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        encryptionService = new EncryptionService(Base64.getEncoder().encodeToString(rawKey));
+        legacyKey = new SecretKeySpec(rawKey, "AES");
+
+        ciphertexts = new ArrayList<>(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            ciphertexts.add(encryptionService.encrypt("Resident " + i + " took morning meds, BP 120/80. "
+                    + "Family asked about visiting hours this weekend.".repeat(1 + i % 4)));
+        }
+    }
+
+    @Benchmark
+    public void legacyPerCall(Blackhole bh) throws Exception {
+        for (String c : ciphertexts) {
+            bh.consume(legacyDecrypt(c));
+        }
+    }
+
+    @Benchmark
+    public void perCall(Blackhole bh) {
+        for (String c : ciphertexts) {
+            bh.consume(encryptionService.decrypt(c));
+        }
+    }
+
+    @Benchmark
+    public List<String> decryptAll() {
+        return encryptionService.decryptAll(ciphertexts);
+    }
+
+    // copy of EncryptionService.decrypt before cipher/buffer reuse, kept as the baseline
+    private String legacyDecrypt(String encryptedBase64) throws Exception {
+        // the old format had no key id header — strip it so both variants decrypt the same data
+        String body = encryptedBase64.substring(encryptedBase64.indexOf('$', 1) + 1);
+        byte[] combined = Base64.getDecoder().decode(body);
+
+        byte[] iv = new byte[12];
+        System.arraycopy(combined, 0, iv, 0, 12);
+
+        byte[] ciphertext = new byte[combined.length - 12];
+        System.arraycopy(combined, 12, ciphertext, 0, ciphertext.length);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+
+        return new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(EncryptionServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
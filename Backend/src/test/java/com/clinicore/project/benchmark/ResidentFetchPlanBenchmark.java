@@ -0,0 +1,257 @@
+package com.clinicore.project.benchmark;
+
+import com.clinicore.project.ClinicoreApplication;
+import com.clinicore.project.entity.MedicalProfile;
+import com.clinicore.project.entity.Medication;
+import com.clinicore.project.repository.MedicalProfileRepository;
+import com.clinicore.project.repository.MedicationRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Rows transferred and wall time for loading every resident's medical profile + medications.
+ * "rows" is counted, not estimated: the DataSource is wrapped so every ResultSet row the plan reads
+ * (any follow-up lazy loads included) is counted during one extra, untimed run.
+ *
+ * legacy  — the old single SELECT DISTINCT with every child fetch-joined (one row per medication,
+ *           each repeating the profile/capability/services/record columns)
+ * batched — findAllWithProfileDetails (one row per profile) + findByResidentIdsWithInventory per
+ *           1000 residents (one row per medication, medication/inventory columns only)
+ *
+ * Seeds synthetic residents (15 medications each) into the database from SPRING_DATASOURCE_URL
+ * inside a transaction that is rolled back, so existing data is untouched but counted too.
+ *
+ * Not run by surefire. To run (same environment variables as the integration tests):
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *        com.clinicore.project.benchmark.ResidentFetchPlanBenchmark [100 1000 10000]
+ */
+public class ResidentFetchPlanBenchmark {
+
+    private static final String LEGACY_JPQL = "SELECT DISTINCT p FROM MedicalProfile p " +
+            "LEFT JOIN FETCH p.capability " +
+            "LEFT JOIN FETCH p.medicalServices " +
+            "LEFT JOIN FETCH p.medicalRecord " +
+            "LEFT JOIN FETCH p.medications m " +
+            "LEFT JOIN FETCH m.medicationInventory mi " +
+            "LEFT JOIN FETCH mi.item";
+
+    private static final int MEDICATIONS_PER_RESIDENT = 15;
+    private static final int INVENTORY_ITEMS = 50;
+    // same chunk size as ResidentService
+    private static final int MEDICATION_BATCH_SIZE = 1000;
+    private static final int WARMUP_RUNS = 1;
+    private static final int MEASURED_RUNS = 3;
+    // JDBC interfaces whose results get wrapped on the way from DataSource down to ResultSet
+    private static final List<Class<?>> COUNTED_TYPES = List.of(Connection.class, CallableStatement.class,
+            PreparedStatement.class, Statement.class, ResultSet.class);
+
+    // ResultSet rows read through the wrapped DataSource
+    private static final AtomicLong rowsRead = new AtomicLong();
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final MedicalProfileRepository medicalProfileRepository;
+    private final MedicationRepository medicationRepository;
+
+    private ResidentFetchPlanBenchmark(ConfigurableApplicationContext context) {
+        this.entityManager = context.getBean(EntityManager.class);
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+        this.medicalProfileRepository = context.getBean(MedicalProfileRepository.class);
+        this.medicationRepository = context.getBean(MedicationRepository.class);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100, 1_000, 10_000};
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ClinicoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.root=WARN")
+                .initializers(initializing -> initializing.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                    @Override
+                    public Object postProcessAfterInitialization(Object bean, String beanName) {
+                        return bean instanceof DataSource ? counting(bean, DataSource.class) : bean;
+                    }
+                }))
+                .run()) {
+            ResidentFetchPlanBenchmark benchmark = new ResidentFetchPlanBenchmark(context);
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+
+            System.out.printf("%n%-10s %-8s %12s %12s %12s%n", "residents", "plan", "profiles", "rows", "ms (median)");
+            for (int size : sizes) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    status.setRollbackOnly();
+                    benchmark.seed(size);
+                    benchmark.report(size);
+                });
+            }
+        }
+    }
+
+    private void report(int size) {
+        long profiles = count("SELECT COUNT(*) FROM medical_profile");
+
+        System.out.printf("%-10d %-8s %12d %12d %12.1f%n", size, "legacy", profiles,
+                rowsRead(this::loadLegacy), time(this::loadLegacy));
+        System.out.printf("%-10d %-8s %12d %12d %12.1f%n", size, "batched", profiles,
+                rowsRead(this::loadBatched), time(this::loadBatched));
+    }
+
+    private int loadLegacy() {
+        int touched = 0;
+        List<MedicalProfile> loaded = entityManager.createQuery(LEGACY_JPQL, MedicalProfile.class).getResultList();
+        for (MedicalProfile profile : loaded) {
+            for (Medication medication : profile.getMedications()) {
+                if (medication.getMedicationInventory() != null) {
+                    touched += medication.getMedicationInventory().getItem().getName().length();
+                }
+            }
+        }
+        return touched;
+    }
+
+    private int loadBatched() {
+        int touched = 0;
+        List<Long> ids = medicalProfileRepository.findAllWithProfileDetails().stream()
+                .map(MedicalProfile::getResidentId)
+                .toList();
+        for (int from = 0; from < ids.size(); from += MEDICATION_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MEDICATION_BATCH_SIZE, ids.size()));
+            for (Medication medication : medicationRepository.findByResidentIdsWithInventory(chunk)) {
+                if (medication.getMedicationInventory() != null) {
+                    touched += medication.getMedicationInventory().getItem().getName().length();
+                }
+            }
+        }
+        return touched;
+    }
+
+    // median wall time; the persistence context is cleared first so every run goes to the database
+    private double time(Supplier<Integer> plan) {
+        double[] millis = new double[MEASURED_RUNS];
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            entityManager.clear();
+            long start = System.nanoTime();
+            plan.get();
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS) {
+                millis[run - WARMUP_RUNS] = elapsed / 1_000_000.0;
+            }
+        }
+        Arrays.sort(millis);
+        return millis[MEASURED_RUNS / 2];
+    }
+
+    // rows the plan actually pulled over JDBC, from a cold persistence context
+    private long rowsRead(Supplier<Integer> plan) {
+        entityManager.clear();
+        long before = rowsRead.get();
+        plan.get();
+        return rowsRead.get() - before;
+    }
+
+    // wraps a JDBC object so whatever it hands out is wrapped too, and ResultSet.next() returning true is counted
+    private static Object counting(Object target, Class<?> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (target instanceof ResultSet && method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rowsRead.incrementAndGet();
+            }
+            if (result != null && !method.getName().equals("unwrap")) {
+                for (Class<?> counted : COUNTED_TYPES) {
+                    if (method.getReturnType() == counted) {
+                        return counting(result, counted);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value != null ? value : 0;
+    }
+
+    private void seed(int residents) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String prefix = "bench" + System.nanoTime() + "-";
+
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 0; i < INVENTORY_ITEMS; i++) {
+            items.add(new Object[]{prefix + "med-" + i, 500, now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO item (name, quantity, created_at, updated_at) VALUES (?, ?, ?, ?)", items);
+        List<Long> itemIds = jdbcTemplate.queryForList("SELECT id FROM item WHERE name LIKE ?", Long.class, prefix + "%");
+        jdbcTemplate.batchUpdate("INSERT INTO medication_inventory (id, dosage_per_serving) VALUES (?, ?)",
+                itemIds.stream().map(id -> new Object[]{id, "10 mg"}).toList());
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < residents; i++) {
+            users.add(new Object[]{prefix + i + "@example.invalid", "Bench", "Resident " + i, "F",
+                    Date.valueOf(LocalDate.of(1940, 1, 1)), "555-0100", prefix + i, "x", "RESIDENT", now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_profile (email, first_name, last_name, gender, birthday, " +
+                "contact_number, username, password_hash, role, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", users);
+        List<Long> residentIds = jdbcTemplate.queryForList(
+                "SELECT id FROM user_profile WHERE username LIKE ?", Long.class, prefix + "%");
+
+        List<Object[]> perResident = residentIds.stream().map(id -> new Object[]{id}).toList();
+        jdbcTemplate.batchUpdate("INSERT INTO resident (id, emergency_contact_name, emergency_contact_number) " +
+                "VALUES (?, 'Family Contact', '555-0101')", perResident);
+        jdbcTemplate.batchUpdate("INSERT INTO medical_profile (resident_id, insurance, notes, created_at, updated_at) " +
+                "VALUES (?, 'Medicare', 'Seeded for benchmark', NOW(), NOW())", perResident);
+        jdbcTemplate.batchUpdate("INSERT INTO capability (resident_id, verbal, self_medicates, incontinence_status, " +
+                "mobility_status) VALUES (?, TRUE, FALSE, 'CONTINENT', 'WALKS_WITH_ASSISTANCE')", perResident);
+        jdbcTemplate.batchUpdate("INSERT INTO medical_services (resident_id, preferred_hospital, preferred_pharmacy, " +
+                "dnr_polst, hospice, home_health) VALUES (?, 'General Hospital', 'Main St Pharmacy', 'Full Code', " +
+                "FALSE, FALSE)", perResident);
+        jdbcTemplate.batchUpdate("INSERT INTO medical_record (resident_id, notes, created_at, updated_at) " +
+                "VALUES (?, 'Seeded for benchmark', NOW(), NOW())", perResident);
+
+        List<Object[]> medications = new ArrayList<>(residentIds.size() * MEDICATIONS_PER_RESIDENT);
+        for (int r = 0; r < residentIds.size(); r++) {
+            for (int m = 0; m < MEDICATIONS_PER_RESIDENT; m++) {
+                // two in three medications tracked in inventory
+                Long inventoryId = m % 3 == 2 ? null : itemIds.get((r + m) % itemIds.size());
+                medications.add(new Object[]{residentIds.get(r), inventoryId, "Medication " + m, "10 mg",
+                        "Twice daily", "PENDING", now, now});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO medication (medical_profile_id, medication_inventory_id, " +
+                "medication_name, dosage, frequency, intake_status, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", medications);
+    }
+}
@@ -0,0 +1,80 @@
+package com.clinicore.project.config;
+
+import com.clinicore.project.service.JwtService;
+import org.junit.jupiter.api.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class StompAuthChannelInterceptorTest {
+
+    private static final String TEST_SECRET = "test-secret-key-at-least-32-chars-long-for-hs256!";
+
+    private StompAuthChannelInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new StompAuthChannelInterceptor(new JwtService(TEST_SECRET, 60L * 60L * 1000L));
+    }
+
+    // a frame from an already-authenticated session, user 2
+    private static Message<byte[]> frame(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken("2", null, List.of()));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: SEND to an application destination is let through")
+    void testSendToApp() {
+        System.out.println("\n=== TEST 1: SEND /app ===");
+
+        Message<byte[]> message = frame(StompCommand.SEND, "/app/typing");
+        assertSame(message, interceptor.preSend(message, null));
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: SEND to another user's queue or the broker is rejected")
+    void testSendToBrokerRejected() {
+        System.out.println("\n=== TEST 2: SEND /user, /queue ===");
+
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/user/1/queue/messages"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/queue/messages-user1"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, "/application/typing"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SEND, null), null));
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: SUBSCRIBE only to /user destinations")
+    void testSubscribe() {
+        System.out.println("\n=== TEST 3: SUBSCRIBE ===");
+
+        Message<byte[]> message = frame(StompCommand.SUBSCRIBE, "/user/queue/messages");
+        assertSame(message, interceptor.preSend(message, null));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/queue/messages-user1"), null));
+
+        System.out.println("PASSED TEST 3");
+    }
+}
@@ -1,9 +1,14 @@
 package com.clinicore.project.integration;
 
 import com.clinicore.project.entity.CommunicationPortal;
+import com.clinicore.project.entity.AttachmentBlob;
+import com.clinicore.project.repository.ArchivedMessageRepository;
+import com.clinicore.project.repository.AttachmentBlobRepository;
 import com.clinicore.project.repository.MessagesRepository;
 import com.clinicore.project.service.EncryptionService;
 import com.clinicore.project.service.JwtService;
+import com.clinicore.project.service.MessageArchiveService;
+import com.clinicore.project.util.ConversationKey;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,11 +19,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -44,6 +53,15 @@ class MessageEncryptionIntegrationTest {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    @Autowired
+    private ArchivedMessageRepository archivedMessageRepository;
+
+    @Autowired
+    private AttachmentBlobRepository attachmentBlobRepository;
+
     // sender=1 (Admin), recipient=2 (Caregiver) → conversationId = "1_2"
     private static final Long SENDER_ID = 1L;
     private static final Long RECIPIENT_ID = 2L;
@@ -74,7 +92,7 @@ class MessageEncryptionIntegrationTest {
                 .andExpect(jsonPath("$.message").value(plaintext));
 
         List<CommunicationPortal> stored =
-                messagesRepository.findByConversationIdOrderBySentAtAsc(CONVERSATION_ID);
+                messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID));
         assertThat(stored).isNotEmpty();
 
         CommunicationPortal last = stored.getLast();
@@ -127,7 +145,7 @@ class MessageEncryptionIntegrationTest {
                 .andExpect(status().isOk());
 
         List<CommunicationPortal> stored =
-                messagesRepository.findByConversationIdOrderBySentAtAsc(CONVERSATION_ID);
+                messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID));
         assertThat(stored.size()).isGreaterThanOrEqualTo(2);
 
         int size = stored.size();
@@ -179,7 +197,7 @@ class MessageEncryptionIntegrationTest {
                 .andExpect(status().isOk());
 
         List<CommunicationPortal> stored =
-                messagesRepository.findByConversationIdOrderBySentAtAsc(CONVERSATION_ID);
+                messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID));
         assertThat(stored).isNotEmpty();
 
         CommunicationPortal last = stored.getLast();
@@ -189,8 +207,10 @@ class MessageEncryptionIntegrationTest {
                 .isNotEmpty();
         // And it must decrypt back cleanly
         assertThat(encryptionService.decrypt(last.getMessage())).isEqualTo("");
-        // And the binary payload landed in the DB
-        assertThat(last.getAttachmentData()).isNotNull().isNotEmpty();
+        // And the binary payload landed in the attachment store, not the DB
+        assertThat(last.getAttachmentKey()).isNotNull().hasSize(64);
+        assertThat(last.getAttachmentSize()).isEqualTo(pngBytes.length);
+        assertThat(last.getAttachmentData()).isNull();
         assertThat(last.getAttachmentName()).isEqualTo("test-encrypt.png");
         assertThat(last.getAttachmentType()).isEqualTo("image/png");
     }
@@ -215,4 +235,146 @@ class MessageEncryptionIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[*].lastMessage", hasItem(plaintext)));
     }
+
+    // --- Scenario 7 ---
+
+    @Test
+    @DisplayName("Broadcast messages are batch-inserted encrypted and show up in the recipient's conversation")
+    void broadcastMessageIsStoredEncrypted() throws Exception {
+        String plaintext = "Facility-wide notice scenario seven";
+
+        mockMvc.perform(post("/api/messages/chat/broadcast")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"recipientIds": [2], "message": "%s"}
+                            """.formatted(plaintext)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recipientCount").value(1));
+
+        CommunicationPortal last =
+                messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID)).getLast();
+        assertThat(last.getId()).isNotNull();
+        assertThat(last.getMessage()).isNotEqualTo(plaintext);
+        assertThat(encryptionService.decrypt(last.getMessage())).isEqualTo(plaintext);
+    }
+
+    // --- Scenario 8 ---
+
+    @Test
+    @DisplayName("Delta sync returns new messages decrypted and rejects malformed cursors")
+    void syncReturnsDecryptedNewMessages() throws Exception {
+        String plaintext = "Delta sync scenario eight";
+        Long lastId = messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID)).stream()
+                .map(CommunicationPortal::getId)
+                .max(Long::compare)
+                .orElse(0L);
+
+        mockMvc.perform(post("/api/messages/chat/send")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"senderId": 1, "recipientId": 2, "message": "%s"}
+                            """.formatted(plaintext)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/messages/chat/sync?since=" + lastId + ".0")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[*].message", hasItem(plaintext)))
+                .andExpect(jsonPath("$.resetRequired").value(false));
+
+        mockMvc.perform(get("/api/messages/chat/sync?since=not-a-cursor")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader))
+                .andExpect(status().isBadRequest());
+    }
+
+    // --- Scenario 9 ---
+
+    // not in the test transaction: messages are indexed after the send commits, on the index executor.
+    // The message stays committed like a real send, so the search word is unique per run
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Search finds a sent message by its words without storing plaintext")
+    void searchFindsSentMessage() throws Exception {
+        String word = "zebra" + System.nanoTime();
+        String plaintext = "Blind index scenario nine " + word;
+
+        mockMvc.perform(post("/api/messages/chat/send")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"senderId": 1, "recipientId": 2, "message": "%s"}
+                            """.formatted(plaintext)))
+                .andExpect(status().isOk());
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                mockMvc.perform(get("/api/messages/chat/search?q=" + word.toUpperCase() + " nine")
+                                .header(HttpHeaders.AUTHORIZATION, authHeader))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$[0].conversationId").value(CONVERSATION_ID)));
+    }
+
+    // --- Scenario 10 ---
+
+    @Test
+    @DisplayName("Archived messages leave the live table but still page in with the conversation and sync")
+    void archivedMessagesStillPageIn() throws Exception {
+        String plaintext = "Archive tier scenario ten";
+
+        CommunicationPortal old = new CommunicationPortal();
+        old.setSenderId(SENDER_ID);
+        old.setRecipientId(RECIPIENT_ID);
+        old.setMessage(encryptionService.encrypt(plaintext));
+        old.setIsRead(true);
+        Long id = messagesRepository.saveAndFlush(old).getId();
+
+        // everything read up to a minute from now counts as old enough
+        messageArchiveService.archiveOlderThan(LocalDateTime.now().plusMinutes(1));
+
+        assertThat(messagesRepository.findById(id)).isEmpty();
+        assertThat(archivedMessageRepository.findById(id)).isPresent();
+
+        mockMvc.perform(get("/api/messages/chat/conversation/" + CONVERSATION_ID + "?before=" + (id + 1) + "&limit=5")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[*].message", hasItem(plaintext)));
+
+        // a client resyncing from an old cursor gets archived history too
+        mockMvc.perform(get("/api/messages/chat/sync?since=" + (id - 1) + ".0")
+                        .header(HttpHeaders.AUTHORIZATION, authHeader))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[*].message", hasItem(plaintext)));
+    }
+
+    // --- Scenario 11 ---
+
+    @Test
+    @DisplayName("The same attachment sent twice is stored once and referenced twice")
+    void duplicateAttachmentsShareOneFile() throws Exception {
+        // unique content per run so the count starts from zero
+        byte[] content = ("dedup scenario eleven " + System.nanoTime()).getBytes();
+
+        for (int i = 0; i < 2; i++) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file", "dedup-" + i + ".txt", "text/plain", content);
+            mockMvc.perform(multipart("/api/messages/chat/send-with-attachment")
+                            .file(file)
+                            .param("senderId", "1")
+                            .param("recipientId", "2")
+                            .param("message", "")
+                            .header(HttpHeaders.AUTHORIZATION, authHeader))
+                    .andExpect(status().isOk());
+        }
+
+        List<CommunicationPortal> stored =
+                messagesRepository.findByConversationKeyOrderBySentAtAsc(ConversationKey.parse(CONVERSATION_ID));
+        CommunicationPortal first = stored.get(stored.size() - 2);
+        CommunicationPortal second = stored.getLast();
+        assertThat(second.getAttachmentKey()).isEqualTo(first.getAttachmentKey());
+
+        AttachmentBlob blob = attachmentBlobRepository.findById(second.getAttachmentKey()).orElseThrow();
+        assertThat(blob.getRefCount()).isEqualTo(2L);
+        assertThat(blob.getSize()).isEqualTo((long) content.length);
+    }
 }
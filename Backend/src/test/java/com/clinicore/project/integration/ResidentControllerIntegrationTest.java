@@ -7,10 +7,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -302,4 +308,156 @@ class ResidentControllerIntegrationTest {
 
         System.out.println("PASSED TEST 12");
     }
+
+    // ==================== STREAMING ====================
+
+    @Test
+    @Order(13)
+    @DisplayName("TEST 13: GET /full?stream=true writes the same residents as /full")
+    void testStreamAllResidentsFull() throws Exception {
+        System.out.println("\n=== TEST 13: Stream All Residents Full ===");
+
+        String full = mockMvc.perform(get("/api/residents/full")
+                        .param("currentUserId", ADMIN_ID.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        MvcResult streaming = mockMvc.perform(get("/api/residents/full")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String streamed = mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andReturn().getResponse().getContentAsString();
+
+        // every id at any depth (residents, medications, allergies, ...), sorted: /full keeps
+        // findByRole's order, which isn't defined, while the stream goes by resident id
+        List<String> expectedIds = new ArrayList<>(objectMapper.readTree(full).findValuesAsText("id"));
+        List<String> streamedIds = new ArrayList<>(objectMapper.readTree(streamed).findValuesAsText("id"));
+        Collections.sort(expectedIds);
+        Collections.sort(streamedIds);
+        Assertions.assertEquals(expectedIds, streamedIds);
+
+        System.out.println("PASSED TEST 13");
+    }
+
+    // ==================== QUERY API ====================
+
+    @Test
+    @Order(14)
+    @DisplayName("TEST 14: GET /api/residents pages by cursor and returns only the requested fields")
+    void testQueryResidentsSparseFields() throws Exception {
+        System.out.println("\n=== TEST 14: Query Residents Sparse Fields ===");
+
+        String first = mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("fields", "firstName,lastName")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.residents.length()").value(1))
+                .andExpect(jsonPath("$.residents[0].id").exists())
+                .andExpect(jsonPath("$.residents[0].firstName").exists())
+                .andExpect(jsonPath("$.residents[0].medications").doesNotExist())
+                .andExpect(jsonPath("$.residents[0].medicalRecord").doesNotExist())
+                .andExpect(jsonPath("$.hasMore").isBoolean())
+                .andReturn().getResponse().getContentAsString();
+
+        // the next page starts after the cursor
+        Long cursor = objectMapper.readTree(first).get("residents").get(0).get("id").asLong();
+        String second = mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("fields", "firstName")
+                        .param("after", cursor.toString())
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        for (var resident : objectMapper.readTree(second).get("residents")) {
+            Assertions.assertTrue(resident.get("id").asLong() > cursor);
+        }
+
+        System.out.println("PASSED TEST 14");
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("TEST 15: GET /api/residents filters and rejects unknown fields/statuses")
+    void testQueryResidentsFilters() throws Exception {
+        System.out.println("\n=== TEST 15: Query Residents Filters ===");
+
+        mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("mobilityStatus", "WHEELCHAIR")
+                        .param("fields", "capability"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.residents[*].capability.mobilityStatus").value(
+                        everyItem(is("Wheelchair"))));
+
+        mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("overdue", "true")
+                        .param("fields", "medications"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.residents").isArray());
+
+        mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("fields", "passwordHash"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/residents")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .param("mobilityStatus", "FLYING"))
+                .andExpect(status().isBadRequest());
+
+        System.out.println("PASSED TEST 15");
+    }
+
+    // ==================== ETAGS ====================
+
+    @Test
+    @Order(16)
+    @DisplayName("TEST 16: GET /full/{id} answers If-None-Match with 304 until the resident changes")
+    void testResidentETag() throws Exception {
+        System.out.println("\n=== TEST 16: Resident ETag ===");
+
+        String etag = mockMvc.perform(get("/api/residents/full/" + RESIDENT_ID)
+                        .param("currentUserId", ADMIN_ID.toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/residents/full/" + RESIDENT_ID)
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        // any write to the resident moves the version
+        String original = objectMapper.readTree(mockMvc.perform(get("/api/residents/full/" + RESIDENT_ID)
+                        .param("currentUserId", ADMIN_ID.toString()))
+                .andReturn().getResponse().getContentAsString()).path("medicalProfile").path("notes").asText("");
+        mockMvc.perform(patch("/api/residents/" + RESIDENT_ID + "/medical-profile")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("notes", "ETag integration test"))))
+                .andExpect(status().isOk());
+
+        String changed = mockMvc.perform(get("/api/residents/full/" + RESIDENT_ID)
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.medicalProfile.notes").value("ETag integration test"))
+                .andReturn().getResponse().getHeader("ETag");
+        Assertions.assertNotEquals(etag, changed);
+
+        mockMvc.perform(patch("/api/residents/" + RESIDENT_ID + "/medical-profile")
+                        .param("currentUserId", ADMIN_ID.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("notes", original))))
+                .andExpect(status().isOk());
+
+        System.out.println("PASSED TEST 16");
+    }
 }
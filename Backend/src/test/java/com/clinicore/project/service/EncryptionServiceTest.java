@@ -2,7 +2,17 @@ package com.clinicore.project.service;
 
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -121,4 +131,175 @@ class EncryptionServiceTest {
 
         System.out.println("PASSED TEST 7");
     }
+
+    @Test
+    @Order(8)
+    @DisplayName("TEST 8: decryptAll keeps order for small and parallel-sized batches")
+    void testDecryptAllKeepsOrder() {
+        System.out.println("\n=== TEST 8: decryptAll Order ===");
+
+        for (int size : new int[]{3, EncryptionService.PARALLEL_THRESHOLD * 4}) {
+            List<String> plaintexts = new ArrayList<>();
+            List<String> encrypted = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                String plaintext = "message #" + i + " " + "x".repeat(i % 50);
+                plaintexts.add(plaintext);
+                encrypted.add(encryptionService.encrypt(plaintext));
+            }
+            assertEquals(plaintexts, encryptionService.decryptAll(encrypted));
+        }
+
+        System.out.println("PASSED TEST 8");
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("TEST 9: decryptAll passes null and empty entries through")
+    void testDecryptAllNullAndEmpty() {
+        System.out.println("\n=== TEST 9: decryptAll Null/Empty ===");
+
+        List<String> input = Arrays.asList(encryptionService.encrypt("a"), null, "", encryptionService.encrypt("b"));
+        assertEquals(Arrays.asList("a", null, "", "b"), encryptionService.decryptAll(input));
+        assertTrue(encryptionService.decryptAll(List.of()).isEmpty());
+
+        System.out.println("PASSED TEST 9");
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("TEST 10: decryptAll fails if any entry is not valid ciphertext")
+    void testDecryptAllRejectsInvalidEntry() {
+        System.out.println("\n=== TEST 10: decryptAll Invalid Entry ===");
+
+        List<String> input = List.of(encryptionService.encrypt("ok"), "legacy plaintext row");
+        assertThrows(RuntimeException.class, () -> encryptionService.decryptAll(input));
+
+        System.out.println("PASSED TEST 10");
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("TEST 11: Messages larger than the reusable buffer round-trip on the same thread")
+    void testBufferGrowth() {
+        System.out.println("\n=== TEST 11: Buffer Growth ===");
+
+        String small = "short";
+        // grows the thread's buffer, then one past the cap that gets a one-off array
+        String medium = "x".repeat(EncryptionService.MAX_REUSED_BUFFER - 100);
+        String large = "0123456789".repeat(10_000);
+        assertEquals(small, encryptionService.decrypt(encryptionService.encrypt(small)));
+        assertEquals(medium, encryptionService.decrypt(encryptionService.encrypt(medium)));
+        assertEquals(large, encryptionService.decrypt(encryptionService.encrypt(large)));
+        assertEquals(small, encryptionService.decrypt(encryptionService.encrypt(small)));
+        assertEquals(medium, encryptionService.decrypt(encryptionService.encrypt(medium)));
+
+        System.out.println("PASSED TEST 11");
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("TEST 12: Streams round-trip at and around segment boundaries")
+    void testStreamRoundTrip() throws Exception {
+        System.out.println("\n=== TEST 12: Stream Round Trip ===");
+
+        int segment = 64 * 1024;
+        for (int size : new int[]{0, 1, segment - 1, segment, segment + 1, 3 * segment + 17}) {
+            byte[] plain = new byte[size];
+            for (int i = 0; i < size; i++) plain[i] = (byte) (i * 31);
+
+            byte[] sealed = encryptStream(plain);
+            assertTrue(EncryptionService.isStreamEncrypted(sealed));
+            assertEquals(size, EncryptionService.plaintextLength(sealed.length), "length for " + size);
+            assertArrayEquals(plain, decryptStream(sealed), "round trip for " + size);
+        }
+
+        System.out.println("PASSED TEST 12");
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("TEST 13: Tampered or truncated streams fail instead of returning bad bytes")
+    void testStreamTamperAndTruncation() throws Exception {
+        System.out.println("\n=== TEST 13: Stream Tamper & Truncation ===");
+
+        byte[] plain = new byte[2 * 64 * 1024 + 100];
+        Arrays.fill(plain, (byte) 7);
+        byte[] sealed = encryptStream(plain);
+
+        byte[] tampered = sealed.clone();
+        tampered[tampered.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> decryptStream(tampered));
+
+        // cut exactly after the first full segment — must not look like a complete stream
+        byte[] truncated = Arrays.copyOf(sealed, 11 + 64 * 1024 + 16);
+        assertThrows(IOException.class, () -> decryptStream(truncated));
+
+        // not our format at all
+        assertFalse(EncryptionService.isStreamEncrypted("%PDF-1.7".getBytes()));
+        assertThrows(IOException.class, () -> decryptStream("%PDF-1.7 plaintext".getBytes()));
+
+        System.out.println("PASSED TEST 13");
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("TEST 14: encryptAll keeps order and gives repeated plaintexts distinct ciphertexts")
+    void testEncryptAll() {
+        System.out.println("\n=== TEST 14: encryptAll ===");
+
+        List<String> input = Collections.nCopies(300, "Fire drill at 2pm");
+        List<String> encrypted = encryptionService.encryptAll(input);
+
+        assertEquals(300, encrypted.size());
+        assertEquals(300, new HashSet<>(encrypted).size(), "every entry needs its own IV");
+        assertEquals(input, encryptionService.decryptAll(encrypted));
+
+        System.out.println("PASSED TEST 14");
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("TEST 15: Key rotation — old and headerless ciphertext still decrypts, re-encryption moves it to the active key")
+    void testKeyRotation() {
+        System.out.println("\n=== TEST 15: Key Rotation ===");
+
+        String baseKey = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+        String newKey = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+        EncryptionService rotated = new EncryptionService(baseKey, "k2:" + newKey, "k2");
+
+        String oldCiphertext = encryptionService.encrypt("Resident prefers tea");
+        assertTrue(oldCiphertext.startsWith("$0$"));
+        // format from before key ids: no header at all
+        String headerless = oldCiphertext.substring(3);
+
+        assertEquals("Resident prefers tea", rotated.decrypt(oldCiphertext));
+        assertEquals("Resident prefers tea", rotated.decrypt(headerless));
+        assertTrue(rotated.needsReEncryption(oldCiphertext));
+        assertTrue(rotated.needsReEncryption(headerless));
+
+        String moved = rotated.reEncrypt(headerless);
+        assertTrue(moved.startsWith("$k2$"));
+        assertFalse(rotated.needsReEncryption(moved));
+        assertEquals("Resident prefers tea", rotated.decrypt(moved));
+
+        // a service without k2 in its ring can't read it
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(moved));
+        assertThrows(IllegalArgumentException.class, () -> new EncryptionService(baseKey, "", "k9"));
+
+        System.out.println("PASSED TEST 15");
+    }
+
+    private byte[] encryptStream(byte[] plain) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = encryptionService.encryptingOutputStream(sink)) {
+            out.write(plain);
+        }
+        return sink.toByteArray();
+    }
+
+    private byte[] decryptStream(byte[] sealed) throws IOException {
+        try (InputStream in = encryptionService.decryptingInputStream(new ByteArrayInputStream(sealed))) {
+            return in.readAllBytes();
+        }
+    }
 }
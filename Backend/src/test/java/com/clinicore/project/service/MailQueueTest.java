@@ -0,0 +1,74 @@
+package com.clinicore.project.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MailQueueTest {
+
+    private MailQueue mailQueue;
+
+    @AfterEach
+    void tearDown() {
+        mailQueue.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Sends are spaced out to the configured rate")
+    void testSendsArePaced() throws InterruptedException {
+        System.out.println("\n=== TEST 1: Rate Limit ===");
+
+        // 600 per minute = one every 100 ms
+        mailQueue = new MailQueue(10, 600, new SimpleMeterRegistry());
+        List<Long> sentAt = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(mailQueue.submit(() -> {
+                sentAt.add(System.nanoTime());
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(sentAt.get(2) - sentAt.get(0));
+        assertTrue(elapsedMillis >= 190, "3 sends took only " + elapsedMillis + " ms");
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: A full queue refuses new mail instead of growing")
+    void testFullQueueRejects() throws InterruptedException {
+        System.out.println("\n=== TEST 2: Bounded Queue ===");
+
+        mailQueue = new MailQueue(1, 6000, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        // first one occupies the sender thread, second fills the queue
+        assertTrue(mailQueue.submit(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(mailQueue.submit(() -> { }));
+        assertFalse(mailQueue.submit(() -> { }));
+
+        release.countDown();
+
+        System.out.println("PASSED TEST 2");
+    }
+}
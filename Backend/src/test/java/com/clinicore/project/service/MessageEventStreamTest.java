@@ -0,0 +1,68 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.MessageEventDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MessageEventStreamTest {
+
+    private MessageEventStream stream;
+
+    @BeforeEach
+    void setUp() {
+        stream = new MessageEventStream(8, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Events reach only the addressed user's streams, including ones emitted before subscribing")
+    void testEventsReachTheirUser() {
+        System.out.println("\n=== TEST 1: Events Per User ===");
+
+        Flux<MessageEventDTO> user1 = stream.subscribe(1L);
+        Flux<MessageEventDTO> user2 = stream.subscribe(2L);
+
+        stream.emit(1L, MessageEventDTO.unreadCount("1_2", 1));
+        stream.emit(2L, MessageEventDTO.unreadCount("1_2", 3));
+
+        StepVerifier.create(user1)
+                .assertNext(e -> assertEquals(1, e.getUnreadDelta()))
+                .thenCancel()
+                .verify();
+        StepVerifier.create(user2)
+                .assertNext(e -> assertEquals(3, e.getUnreadDelta()))
+                .thenCancel()
+                .verify();
+
+        // cancelled streams are unregistered
+        assertEquals(0, stream.openStreams(1L));
+        assertEquals(0, stream.openStreams(2L));
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: A stream that falls behind its buffer is ended after the buffered events")
+    void testStalledStreamIsEnded() {
+        System.out.println("\n=== TEST 2: Backpressure Overflow ===");
+
+        Flux<MessageEventDTO> events = stream.subscribe(1L);
+        for (int i = 1; i <= 10; i++) {
+            stream.emit(1L, MessageEventDTO.unreadCount("1_2", i));
+        }
+        assertEquals(0, stream.openStreams(1L));
+
+        // buffer holds 8: those arrive, then the stream completes so the client reconnects
+        StepVerifier.create(events)
+                .expectNextCount(8)
+                .verifyComplete();
+
+        System.out.println("PASSED TEST 2");
+    }
+}
@@ -0,0 +1,67 @@
+package com.clinicore.project.service;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MessageSearchServiceTest {
+
+    private static final String ENCRYPTION_KEY =
+            Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+    private MessageSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        // tokenizing and hashing don't touch the repositories
+        searchService = new MessageSearchService(null, null, null, null, null, null, ENCRYPTION_KEY, "", false, 200, 1);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Tokens are lower-cased, accent-free, de-duplicated words of 2+ characters")
+    void testTokenize() {
+        System.out.println("\n=== TEST 1: Tokenize ===");
+
+        Set<String> tokens = MessageSearchService.tokenize("Café visit at 3pm — CAFÉ is open, a b");
+        assertEquals(List.of("cafe", "visit", "at", "3pm", "is", "open"), List.copyOf(tokens));
+        assertTrue(MessageSearchService.tokenize(null).isEmpty());
+        assertTrue(MessageSearchService.tokenize("  ").isEmpty());
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Same word hashes the same regardless of case; different keys give different hashes")
+    void testHashing() {
+        System.out.println("\n=== TEST 2: Hashing ===");
+
+        assertEquals(searchService.hashTokens("Insulin"), searchService.hashTokens("insulin"));
+        assertNotEquals(searchService.hashTokens("insulin"), searchService.hashTokens("insult"));
+
+        String otherKey = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+        MessageSearchService other = new MessageSearchService(null, null, null, null, null, null, ENCRYPTION_KEY, otherKey, false, 200, 1);
+        assertNotEquals(searchService.hashTokens("insulin"), other.hashTokens("insulin"));
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: Very long messages are capped at MAX_TOKENS_PER_MESSAGE tokens")
+    void testTokenCap() {
+        System.out.println("\n=== TEST 3: Token Cap ===");
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) text.append("word").append(i).append(' ');
+        assertEquals(MessageSearchService.MAX_TOKENS_PER_MESSAGE, MessageSearchService.tokenize(text.toString()).size());
+
+        System.out.println("PASSED TEST 3");
+    }
+}
@@ -0,0 +1,80 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.util.ConversationKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class PresenceServiceTest {
+
+    private static final long CONVERSATION_1_2 = ConversationKey.of(1, 2);
+    private static final long CONVERSATION_1_3 = ConversationKey.of(1, 3);
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        // no messaging template: typing pushes are best-effort and just log
+        MessageEventPublisher publisher = new MessageEventPublisher(null, new MessageEventStream(16, new SimpleMeterRegistry()));
+        presenceService = new PresenceService(publisher, 60, 6, 168, now::get);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: A ping makes a user online until the TTL passes; last seen stays")
+    void testOnlineExpires() {
+        System.out.println("\n=== TEST 1: Online TTL ===");
+
+        assertFalse(presenceService.presenceOf(1L, CONVERSATION_1_2).online());
+        assertNull(presenceService.presenceOf(1L, CONVERSATION_1_2).lastSeen());
+
+        presenceService.ping(1L);
+        assertTrue(presenceService.presenceOf(1L, CONVERSATION_1_2).online());
+
+        now.addAndGet(61_000);
+        PresenceService.Presence later = presenceService.presenceOf(1L, CONVERSATION_1_2);
+        assertFalse(later.online());
+        assertNotNull(later.lastSeen());
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Typing shows only in its own conversation and expires on its own")
+    void testTypingExpires() {
+        System.out.println("\n=== TEST 2: Typing TTL ===");
+
+        presenceService.setTyping(1L, CONVERSATION_1_2, true);
+        assertTrue(presenceService.presenceOf(1L, CONVERSATION_1_2).typing());
+        assertFalse(presenceService.presenceOf(1L, CONVERSATION_1_3).typing());
+
+        now.addAndGet(7_000);
+        assertFalse(presenceService.presenceOf(1L, CONVERSATION_1_2).typing());
+        // typing also counts as activity
+        assertTrue(presenceService.presenceOf(1L, CONVERSATION_1_2).online());
+
+        presenceService.setTyping(1L, CONVERSATION_1_2, true);
+        presenceService.setTyping(1L, CONVERSATION_1_2, false);
+        assertFalse(presenceService.presenceOf(1L, CONVERSATION_1_2).typing());
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: Typing in someone else's conversation is rejected")
+    void testTypingRequiresParticipant() {
+        System.out.println("\n=== TEST 3: Typing Participant Check ===");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> presenceService.setTyping(5L, CONVERSATION_1_2, true));
+
+        System.out.println("PASSED TEST 3");
+    }
+}
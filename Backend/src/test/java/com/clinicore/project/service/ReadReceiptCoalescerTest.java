@@ -0,0 +1,56 @@
+package com.clinicore.project.service;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReadReceiptCoalescerTest {
+
+    private static final long CONVERSATION_1_2 = (1L << 32) | 2L;
+    private static final long CONVERSATION_1_3 = (1L << 32) | 3L;
+
+    private ReadReceiptCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        // buffering doesn't touch the repositories; nothing here flushes
+        coalescer = new ReadReceiptCoalescer(null, null, null, null, null, 1000);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Repeated marks for one conversation collapse to the highest message id")
+    void testMarksCoalesce() {
+        System.out.println("\n=== TEST 1: Marks Coalesce ===");
+
+        coalescer.mark(CONVERSATION_1_2, 2L, 10L);
+        coalescer.mark(CONVERSATION_1_2, 2L, 25L);
+        coalescer.mark(CONVERSATION_1_2, 2L, 17L);
+
+        assertEquals(25L, coalescer.pendingUpTo(CONVERSATION_1_2, 2L));
+        assertEquals(Map.of(CONVERSATION_1_2, 25L), coalescer.pendingFor(2L));
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Pending marks are kept per user and per conversation")
+    void testMarksArePerUser() {
+        System.out.println("\n=== TEST 2: Marks Per User ===");
+
+        coalescer.mark(CONVERSATION_1_2, 2L, 10L);
+        coalescer.mark(CONVERSATION_1_2, 1L, 9L);
+        coalescer.mark(CONVERSATION_1_3, 1L, 4L);
+
+        assertEquals(Map.of(CONVERSATION_1_2, 10L), coalescer.pendingFor(2L));
+        assertEquals(Map.of(CONVERSATION_1_2, 9L, CONVERSATION_1_3, 4L), coalescer.pendingFor(1L));
+        assertTrue(coalescer.pendingFor(3L).isEmpty());
+        assertNull(coalescer.pendingUpTo(CONVERSATION_1_3, 3L));
+
+        System.out.println("PASSED TEST 2");
+    }
+}
@@ -0,0 +1,88 @@
+package com.clinicore.project.service;
+
+import com.clinicore.project.dto.ResidentFullDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ResidentDetailsCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResidentDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ResidentDetailsCache(300, meterRegistry);
+    }
+
+    private static ResidentFullDTO resident(long id) {
+        ResidentFullDTO dto = new ResidentFullDTO();
+        dto.setId(id);
+        return dto;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Cached snapshot is returned until invalidated")
+    void testHitMissAndInvalidate() {
+        System.out.println("\n=== TEST 1: Hit, Miss, Invalidate ===");
+
+        assertNull(cache.get(1L));
+        cache.put(1L, resident(1), cache.generation());
+        assertNotNull(cache.get(1L));
+
+        cache.invalidate(1L);
+        assertNull(cache.get(1L));
+
+        assertEquals(1.0, gets("hit"));
+        assertEquals(2.0, gets("miss"));
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: A load that overlaps an invalidation is not cached")
+    void testStaleLoadIsDropped() {
+        System.out.println("\n=== TEST 2: Generation Check ===");
+
+        long loadStarted = cache.generation();
+        // a write lands while the load is still reading the old rows
+        cache.invalidate(2L);
+        cache.put(1L, resident(1), loadStarted);
+        assertNull(cache.get(1L));
+
+        cache.put(1L, resident(1), cache.generation());
+        assertNotNull(cache.get(1L));
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: Expired entries and removed residents are dropped")
+    void testExpiryAndRetain() {
+        System.out.println("\n=== TEST 3: TTL and Retain ===");
+
+        ResidentDetailsCache expiring = new ResidentDetailsCache(-1, new SimpleMeterRegistry());
+        expiring.put(1L, resident(1), expiring.generation());
+        assertNull(expiring.get(1L));
+
+        cache.put(1L, resident(1), cache.generation());
+        cache.put(2L, resident(2), cache.generation());
+        cache.retainOnly(List.of(2L));
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+
+        System.out.println("PASSED TEST 3");
+    }
+}
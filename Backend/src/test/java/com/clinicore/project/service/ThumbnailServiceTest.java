@@ -0,0 +1,83 @@
+package com.clinicore.project.service;
+
+import org.junit.jupiter.api.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ThumbnailServiceTest {
+
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        // createThumbnail only needs the size settings
+        thumbnailService = new ThumbnailService(null, null, null, null, 320, 0.75f, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailService.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Large images are scaled to fit the max dimension, keeping aspect ratio")
+    void testScalesDown() throws Exception {
+        System.out.println("\n=== TEST 1: Scale Down ===");
+
+        byte[] thumbnail = thumbnailService.createThumbnail(new ByteArrayInputStream(png(2400, 1200)));
+        assertNotNull(thumbnail);
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertEquals(320, result.getWidth());
+        assertEquals(160, result.getHeight());
+        assertTrue(thumbnail.length < 50_000, "thumbnail should be small, was " + thumbnail.length);
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Small images are not upscaled")
+    void testNoUpscale() throws Exception {
+        System.out.println("\n=== TEST 2: No Upscale ===");
+
+        byte[] thumbnail = thumbnailService.createThumbnail(new ByteArrayInputStream(png(100, 80)));
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertEquals(100, result.getWidth());
+        assertEquals(80, result.getHeight());
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: Content that isn't an image yields no thumbnail")
+    void testNotAnImage() throws Exception {
+        System.out.println("\n=== TEST 3: Not An Image ===");
+
+        byte[] pdf = "%PDF-1.7 not an image".getBytes(StandardCharsets.UTF_8);
+        assertNull(thumbnailService.createThumbnail(new ByteArrayInputStream(pdf)));
+
+        System.out.println("PASSED TEST 3");
+    }
+
+    private byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y += 10) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF336699);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
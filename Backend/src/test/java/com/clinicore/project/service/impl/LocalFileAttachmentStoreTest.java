@@ -0,0 +1,170 @@
+package com.clinicore.project.service.impl;
+
+import com.clinicore.project.service.AttachmentStore;
+import com.clinicore.project.service.EncryptionService;
+import com.clinicore.project.service.HashService_SHA256;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class LocalFileAttachmentStoreTest {
+
+    @TempDir
+    Path root;
+
+    private HashService_SHA256 hashService;
+    private LocalFileAttachmentStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        hashService = new HashService_SHA256();
+        byte[] rawKey = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        EncryptionService encryptionService = new EncryptionService(Base64.getEncoder().encodeToString(rawKey));
+        store = new LocalFileAttachmentStore(root.toString(), hashService, encryptionService);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Stored content is keyed by its SHA-256 and loads back byte-for-byte")
+    void testStoreAndLoad() throws Exception {
+        System.out.println("\n=== TEST 1: Store & Load ===");
+
+        byte[] content = "wound care photo bytes".getBytes(StandardCharsets.UTF_8);
+        AttachmentStore.StoredAttachment stored = store.store(new ByteArrayInputStream(content));
+
+        assertEquals(hashService.hashBytes(content), stored.key());
+        assertEquals(content.length, stored.size());
+        assertTrue(store.exists(stored.key()));
+
+        Resource resource = store.load(stored.key());
+        assertNotNull(resource);
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Same content stored twice maps to one file, no temp files left behind")
+    void testDuplicateContent() throws Exception {
+        System.out.println("\n=== TEST 2: Duplicate Content ===");
+
+        byte[] content = "same discharge pdf".getBytes(StandardCharsets.UTF_8);
+        String a = store.store(new ByteArrayInputStream(content)).key();
+        String b = store.store(new ByteArrayInputStream(content)).key();
+
+        assertEquals(a, b);
+        try (var tmp = Files.list(root.resolve("tmp"))) {
+            assertEquals(0, tmp.count());
+        }
+
+        System.out.println("PASSED TEST 2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TEST 3: Missing key loads as null, delete removes the file")
+    void testMissingAndDelete() throws Exception {
+        System.out.println("\n=== TEST 3: Missing & Delete ===");
+
+        String missing = "0".repeat(64);
+        assertNull(store.load(missing));
+        assertFalse(store.exists(missing));
+
+        String key = store.store(new ByteArrayInputStream(new byte[]{1, 2, 3})).key();
+        store.delete(key);
+        assertFalse(store.exists(key));
+
+        System.out.println("PASSED TEST 3");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("TEST 4: Keys that aren't SHA-256 hex are rejected (no path traversal)")
+    void testInvalidKeyRejected() {
+        System.out.println("\n=== TEST 4: Invalid Key Rejected ===");
+
+        assertThrows(IllegalArgumentException.class, () -> store.load("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> store.exists(null));
+
+        System.out.println("PASSED TEST 4");
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("TEST 5: Files are encrypted on disk, and legacy plaintext files are encrypted by the backfill")
+    void testEncryptedAtRestAndBackfill() throws Exception {
+        System.out.println("\n=== TEST 5: Encrypted At Rest & Backfill ===");
+
+        byte[] content = "Resident MRN 000123 — wound photo".getBytes(StandardCharsets.UTF_8);
+        String key = store.store(new ByteArrayInputStream(content)).key();
+        byte[] onDisk = Files.readAllBytes(root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key));
+        assertTrue(EncryptionService.isStreamEncrypted(onDisk));
+        assertEquals(content.length, store.load(key).contentLength());
+
+        // a file written before encryption at rest
+        byte[] legacy = "old plaintext attachment".getBytes(StandardCharsets.UTF_8);
+        String legacyKey = hashService.hashBytes(legacy);
+        Path legacyPath = root.resolve(legacyKey.substring(0, 2)).resolve(legacyKey.substring(2, 4)).resolve(legacyKey);
+        Files.createDirectories(legacyPath.getParent());
+        Files.write(legacyPath, legacy);
+        try (InputStream in = store.load(legacyKey).getInputStream()) {
+            assertArrayEquals(legacy, in.readAllBytes());
+        }
+
+        assertEquals(1, store.encryptPlaintextEntries(10));
+        assertEquals(0, store.encryptPlaintextEntries(10));
+        assertTrue(EncryptionService.isStreamEncrypted(Files.readAllBytes(legacyPath)));
+        try (InputStream in = store.load(legacyKey).getInputStream()) {
+            assertArrayEquals(legacy, in.readAllBytes());
+        }
+
+        System.out.println("PASSED TEST 5");
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("TEST 6: Backfill resumes from its cursor across restarts and stops walking once done")
+    void testBackfillCursor() throws Exception {
+        System.out.println("\n=== TEST 6: Backfill Cursor ===");
+
+        for (int i = 0; i < 3; i++) {
+            writeLegacy(("legacy attachment " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(2, store.encryptPlaintextEntries(2));
+
+        // a restart picks up the one that's left
+        LocalFileAttachmentStore restarted = new LocalFileAttachmentStore(root.toString(), hashService,
+                new EncryptionService(Base64.getEncoder().encodeToString(
+                        "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(1, restarted.encryptPlaintextEntries(2));
+        assertEquals(0, restarted.encryptPlaintextEntries(2));
+
+        // done means done — the store isn't walked again (store() never writes plaintext)
+        Path late = writeLegacy("written behind the backfill's back".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, restarted.encryptPlaintextEntries(2));
+        assertFalse(EncryptionService.isStreamEncrypted(Files.readAllBytes(late)));
+
+        System.out.println("PASSED TEST 6");
+    }
+
+    private Path writeLegacy(byte[] content) throws Exception {
+        String key = hashService.hashBytes(content);
+        Path path = root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+        return path;
+    }
+}
@@ -0,0 +1,59 @@
+package com.clinicore.project.util;
+
+import com.clinicore.project.dto.ResidentFullDTO;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ResidentETagTest {
+
+    private static ResidentFullDTO residentWithDose(LocalDateTime nextDose) {
+        ResidentFullDTO.MedicationDTO med = new ResidentFullDTO.MedicationDTO();
+        med.setNextDoseTime(nextDose.toString());
+        med.setIsOverdue(MedicationScheduleUtil.isOverdue(nextDose));
+        ResidentFullDTO dto = new ResidentFullDTO();
+        dto.setMedications(List.of(med));
+        return dto;
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TEST 1: Tag matches its own version and not another")
+    void testVersionMatch() {
+        System.out.println("\n=== TEST 1: Version Match ===");
+
+        String tag = ResidentETag.of(7, new ResidentFullDTO());
+        assertEquals(tag, ResidentETag.matching(tag, 7));
+        assertEquals(tag, ResidentETag.matching("\"1.0\", W/" + tag, 7));
+        assertNull(ResidentETag.matching(tag, 8));
+        assertNull(ResidentETag.matching("*", 7));
+        assertNull(ResidentETag.matching(null, 7));
+
+        System.out.println("PASSED TEST 1");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TEST 2: Tag expires when a medication would turn overdue")
+    void testOverdueDeadline() {
+        System.out.println("\n=== TEST 2: Overdue Deadline ===");
+
+        // due an hour ago: overdue in another hour, so the tag is still good
+        String stillFine = ResidentETag.of(3, residentWithDose(LocalDateTime.now().minusHours(1)));
+        assertNotNull(ResidentETag.matching(stillFine, 3));
+
+        // same data, but the tag was issued when the dose's grace period was already about to end
+        String expired = "\"3." + LocalDateTime.now().minusSeconds(5).toEpochSecond(ZoneOffset.UTC) + "\"";
+        assertNull(ResidentETag.matching(expired, 3));
+
+        // already overdue doses can't flip again, so they don't limit the tag
+        assertEquals("\"3.0\"", ResidentETag.of(3, residentWithDose(LocalDateTime.now().minusHours(5))));
+
+        System.out.println("PASSED TEST 2");
+    }
+}